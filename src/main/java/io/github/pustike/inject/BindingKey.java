@@ -31,27 +31,37 @@ import io.github.pustike.inject.utils.AnnotationUtils;
 public final class BindingKey<T> {
     // the injection type
     private final Class<T> type;
+    // the generic injection type
+    private final TypeLiteral<T> typeLiteral;
     // qualifier annotation
     private final Annotation annotation;
     // type of qualifier annotation
     private final Class<? extends Annotation> annotationType;
     // indicates that this key matches to a provider of the type
-    private boolean providerKey;
+    private final boolean providerKey;
     // indicates that this key matches to a List of the type
-    private boolean multiBinding;
-    // hash code of this binding key, computed lazily using all specified parameters
-    private int hashCode;
+    private final boolean multiBinding;
+    // 64-bit fingerprint of this binding key, computed using all specified parameters except the providerKey
+    private final long fingerprint;
 
     /**
      * Constructs a new Binding Key for the specified type, the qualifier annotation and annotation type.
-     * @param type           the injection class
+     * @param typeLiteral    the generic injection type
      * @param annotation     the qualifying annotation defined for the type
      * @param annotationType the type of qualifier annotation defined for the type
+     * @param providerKey    indicates that this key matches to a provider of the type
+     * @param multiBinding   indicates that this key matches to a List of the type
      */
-    private BindingKey(Class<T> type, Annotation annotation, Class<? extends Annotation> annotationType) {
-        this.type = Objects.requireNonNull(type);
+    @SuppressWarnings("unchecked")
+    private BindingKey(TypeLiteral<T> typeLiteral, Annotation annotation, Class<? extends Annotation> annotationType,
+            boolean providerKey, boolean multiBinding) {
+        this.typeLiteral = Objects.requireNonNull(typeLiteral);
+        this.type = (Class<T>) typeLiteral.getRawType();
         this.annotation = annotation;
         this.annotationType = annotationType;
+        this.providerKey = providerKey;
+        this.multiBinding = multiBinding;
+        this.fingerprint = computeFingerprint();
     }
 
     /**
@@ -61,7 +71,7 @@ public final class BindingKey<T> {
      * @return a new key with the specified type and no qualifying annotation
      */
     public static <T> BindingKey<T> of(Class<T> type) {
-        return new BindingKey<>(type, null, null);
+        return of(TypeLiteral.get(type), (Annotation) null);
     }
 
     /**
@@ -72,7 +82,7 @@ public final class BindingKey<T> {
      * @return a new key with the specified type and the named qualifier
      */
     public static <T> BindingKey<T> of(Class<T> type, String named) {
-        return new BindingKey<>(type, Names.named(named), null);
+        return of(TypeLiteral.get(type), Names.named(named));
     }
 
     /**
@@ -83,7 +93,7 @@ public final class BindingKey<T> {
      * @return a new key with the specified type and the qualifier annotation
      */
     public static <T> BindingKey<T> of(Class<T> type, Annotation annotation) {
-        return new BindingKey<>(type, annotation, annotation == null ? null : annotation.annotationType());
+        return of(TypeLiteral.get(type), annotation);
     }
 
     /**
@@ -94,17 +104,86 @@ public final class BindingKey<T> {
      * @return a new key with the specified type and the type of qualifier annotation
      */
     public static <T> BindingKey<T> of(Class<T> type, Class<? extends Annotation> annotationType) {
-        return new BindingKey<>(type, null, annotationType);
+        return of(TypeLiteral.get(type), annotationType);
+    }
+
+    /**
+     * Constructs a new Binding Key for the specified generic type. For ex:
+     * <pre>{@code BindingKey.of(new TypeLiteral<Cache<String, User>>() {}); }</pre>
+     * @param typeLiteral the generic injection type
+     * @param <T>         the type modeled by this key
+     * @return a new key with the specified type and no qualifying annotation
+     */
+    public static <T> BindingKey<T> of(TypeLiteral<T> typeLiteral) {
+        return of(typeLiteral, (Annotation) null);
+    }
+
+    /**
+     * Constructs a new Binding Key for the specified generic type and name.
+     * @param typeLiteral the generic injection type
+     * @param named       the qualifying name defined for the type
+     * @param <T>         the type modeled by this key
+     * @return a new key with the specified type and the named qualifier
+     */
+    public static <T> BindingKey<T> of(TypeLiteral<T> typeLiteral, String named) {
+        return of(typeLiteral, Names.named(named));
     }
 
     /**
-     * Get the injection type of this key.
+     * Constructs a new Binding Key for the specified generic type and the qualifier annotation.
+     * @param typeLiteral the generic injection type
+     * @param annotation  the qualifying annotation defined for the type
+     * @param <T>         the type modeled by this key
+     * @return a new key with the specified type and the qualifier annotation
+     */
+    public static <T> BindingKey<T> of(TypeLiteral<T> typeLiteral, Annotation annotation) {
+        return new BindingKey<>(typeLiteral, annotation, annotation == null ? null : annotation.annotationType(),
+                false, false);
+    }
+
+    /**
+     * Constructs a new Binding Key for the specified generic type and the qualifier annotation.
+     * @param typeLiteral    the generic injection type
+     * @param annotationType the type of qualifier annotation defined for the type
+     * @param <T>            the type modeled by this key
+     * @return a new key with the specified type and the type of qualifier annotation
+     */
+    public static <T> BindingKey<T> of(TypeLiteral<T> typeLiteral, Class<? extends Annotation> annotationType) {
+        return new BindingKey<>(typeLiteral, null, annotationType, false, false);
+    }
+
+    /**
+     * Get the injection type of this key. If the key is created using a generic type, its raw type is returned.
      * @return the injection type of this key
      */
     public Class<T> getType() {
         return type;
     }
 
+    /**
+     * Get the generic injection type of this key.
+     * @return the generic injection type of this key
+     */
+    public TypeLiteral<T> getTypeLiteral() {
+        return typeLiteral;
+    }
+
+    /**
+     * Get the qualifier annotation of this key, if present.
+     * @return the qualifier annotation, can be null
+     */
+    public Annotation getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * Get the type of qualifier annotation of this key, if present.
+     * @return the type of qualifier annotation, can be null
+     */
+    public Class<? extends Annotation> getAnnotationType() {
+        return annotationType;
+    }
+
     /**
      * Create a new key to indicate that this key matches to a {@link jakarta.inject.Provider} of the type.
      * <p>
@@ -112,7 +191,7 @@ public final class BindingKey<T> {
      * @return a new key that matches to the provider of this binding type and qualifier
      */
     public BindingKey<Provider<T>> toProviderType() {
-        return createBindingKey(true, multiBinding);
+        return createBindingKey(typeLiteral, true, multiBinding);
     }
 
     /**
@@ -123,7 +202,7 @@ public final class BindingKey<T> {
      * @return a new key that matches to the type bound using multiBinder
      */
     public BindingKey<List<T>> toListType() {
-        return createBindingKey(providerKey, true);
+        return createBindingKey(typeLiteral, providerKey, true);
     }
 
     /**
@@ -134,16 +213,22 @@ public final class BindingKey<T> {
      * @return a new key that matches to the type bound using multiBinder
      */
     public BindingKey<List<Provider<T>>> toListProviderType() {
-        return createBindingKey(true, true);
+        return createBindingKey(typeLiteral, true, true);
+    }
+
+    /**
+     * Create a new key with the raw type of this key's generic type, retaining all other parameters. If this key is
+     * not created using a generic type, the key itself is returned.
+     * @return a key that matches to the raw type of this binding type and qualifier
+     */
+    public BindingKey<T> toRawType() {
+        return typeLiteral.isRawType() ? this : createBindingKey(TypeLiteral.get(type), providerKey, multiBinding);
     }
 
     @SuppressWarnings("unchecked")
-    private <K> BindingKey<K> createBindingKey(boolean isProviderKey, boolean isMultiBinding) {
-        BindingKey<?> bindingKey = new BindingKey<>(type, annotation, annotationType);
-        bindingKey.providerKey = isProviderKey;
-        bindingKey.multiBinding = isMultiBinding;
-        bindingKey.hashCode = 0;
-        return (BindingKey<K>) bindingKey;
+    private <K> BindingKey<K> createBindingKey(TypeLiteral<T> typeLiteral, boolean isProviderKey,
+            boolean isMultiBinding) {
+        return (BindingKey<K>) new BindingKey<>(typeLiteral, annotation, annotationType, isProviderKey, isMultiBinding);
     }
 
     /**
@@ -155,7 +240,25 @@ public final class BindingKey<T> {
     }
 
     /**
-     * Uses the computed hash code of this key to check if the given object equals.
+     * Returns true if this key matches to a {@link java.util.List} of the type bound using multiBinder.
+     * @return true if this key is of multiBinding type.
+     */
+    public boolean isMultiBinding() {
+        return multiBinding;
+    }
+
+    /**
+     * Gets the 64-bit fingerprint of this key, computed once using the binding type and qualifier annotation.
+     * @return the fingerprint of this key
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Uses the precomputed fingerprint of this key to quickly reject unequal keys, and then compares the binding type
+     * and the qualifier annotation type. A qualifier annotation matches to the annotation type, if all attributes of
+     * the annotation have their default values.
      * @param obj the reference object with which to compare
      * @return {@code true} if this object is the same as the obj argument; {@code false} otherwise
      * @see #hashCode()
@@ -169,23 +272,25 @@ public final class BindingKey<T> {
             return false;
         }
         BindingKey<?> other = (BindingKey<?>) obj;
-        return hashCode() == other.hashCode();
+        return fingerprint == other.fingerprint && multiBinding == other.multiBinding
+                && annotationType == other.annotationType && typeLiteral.equals(other.typeLiteral)
+                && (annotation == null || other.annotation == null || annotation.equals(other.annotation));
     }
 
     /**
-     * Computes the hash code using hash codes of the binding type and qualifier annotation or annotation type.
+     * Returns the hash code computed using the binding type and qualifier annotation or annotation type.
      * @return the hash code value for this key
      */
     @Override
     public int hashCode() {
-        return hashCode == 0 ? hashCode = computeHashCode() : hashCode;
+        return Long.hashCode(fingerprint);
     }
 
     /**
-     * Computes the hash code for this key.
+     * Computes the fingerprint for this key.
      */
-    private int computeHashCode() {
-        int result = type.hashCode();
+    private long computeFingerprint() {
+        long result = typeLiteral.getFingerprint();
         if (annotation != null) {
             result = 31 * result + annotation.hashCode();
         } else if (annotationType != null) {
@@ -204,7 +309,7 @@ public final class BindingKey<T> {
     }
 
     private static String toString(BindingKey<?> key) {
-        String typeName = key.type.getName();
+        String typeName = key.typeLiteral.toString();
         typeName = key.providerKey ? "Provider<" + typeName + '>' : typeName;
         typeName = key.multiBinding ? "List<" + typeName + '>' : typeName;
         StringBuilder sb = new StringBuilder(typeName);
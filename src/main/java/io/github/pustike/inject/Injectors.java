@@ -15,10 +15,15 @@
  */
 package io.github.pustike.inject;
 
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import io.github.pustike.inject.bind.Module;
+import io.github.pustike.inject.impl.DefaultInjectionPointLoader;
 import io.github.pustike.inject.impl.DefaultInjector;
+import io.github.pustike.inject.impl.PersistentInjectionPointLoader;
 import io.github.pustike.inject.spi.InjectionPointLoader;
 
 /**
@@ -58,6 +63,50 @@ public final class Injectors {
         return DefaultInjector.create(injectionPointLoader, modules);
     }
 
+    /**
+     * Creates the default {@link InjectionPointLoader}, which caches injection points of at most {@code maximumSize}
+     * classes, evicting the least recently used ones. It holds classes weakly, so that they can be unloaded along
+     * with their class loaders, and it records the cache statistics that can be obtained using
+     * {@link InjectionPointLoader#getStats()}.
+     * @param maximumSize the maximum number of classes to cache, or {@code 0} for no limit
+     * @return the new injection point loader
+     * @throws IllegalArgumentException if the maximum size is negative
+     * @see #create(InjectionPointLoader, Iterable)
+     */
+    public static InjectionPointLoader createInjectionPointLoader(int maximumSize) {
+        return new DefaultInjectionPointLoader(maximumSize);
+    }
+
+    /**
+     * Creates an {@link InjectionPointLoader}, which persists injection points discovered by scanning classes to the
+     * given cache file, when the injector is disposed. On the next start, injection points of classes that have not
+     * changed are loaded from this file, without scanning them again. The cache file is ignored if it is not valid.
+     * @param cacheFile the file to load injection points from and to save them to
+     * @return the new injection point loader
+     * @see #create(InjectionPointLoader, Iterable)
+     */
+    public static InjectionPointLoader createInjectionPointLoader(Path cacheFile) {
+        return new PersistentInjectionPointLoader(cacheFile);
+    }
+
+    /**
+     * Warms up the Default Injector, by loading injection points of all bound types in the injector and its parents in
+     * parallel, without creating any instance. Bindings of the dependencies of these types are warmed up transitively,
+     * each binding only once. So that the first requests for instances don't pay for scanning the types and preparing
+     * their constructors, fields and methods for injection.
+     * @param injector the default injector
+     * @param executor the executor to load injection points in
+     * @return a future that completes when injection points of all bindings are loaded
+     * @throws IllegalArgumentException if injector is not an instance of Default Injector
+     */
+    public static CompletableFuture<Void> warmUp(Injector injector, Executor executor) {
+        if (injector instanceof DefaultInjector) {
+            return ((DefaultInjector) injector).warmUp(executor);
+        } else {
+            throw new IllegalArgumentException("Warming up is supported only for default injector!");
+        }
+    }
+
     /**
      * Dispose or release all data held by the Default Injector.
      * @param injector the default injector
@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Represents a generic type {@code T}, so that generic instantiations like {@code Cache<String, User>} and
+ * {@code Cache<Long, Order>} can be used as distinct binding keys. Java doesn't yet provide a way to represent generic
+ * types, so this class does. Clients create an empty anonymous subclass, which embeds the type parameter in the
+ * anonymous class's type hierarchy, so it can be reconstructed at runtime despite erasure. For ex:
+ * <pre>{@code TypeLiteral<Cache<String, User>> cacheType = new TypeLiteral<Cache<String, User>>() {}; }</pre>
+ * <p>
+ * The type is canonicalized when the literal is created and a 64-bit fingerprint is computed from it only once, which
+ * is then used for hashing and as a fast check when comparing two type literals. Literals of non-generic classes are
+ * cached per class, so they are created only once for each class.
+ * <p>
+ * This class is borrowed from Guice project's
+ * <a href="https://github.com/google/guice/blob/master/core/src/com/google/inject/TypeLiteral.java" target="_blank">
+ * TypeLiteral</a> class with few modifications.
+ * @param <T> the type represented by this literal
+ */
+public class TypeLiteral<T> {
+    // cache of type literals created for non-generic classes
+    private static final ClassValue<TypeLiteral<?>> classLiterals = new ClassValue<>() {
+        @Override
+        protected TypeLiteral<?> computeValue(Class<?> type) {
+            return new TypeLiteral<>(type);
+        }
+    };
+    // the canonical type
+    private final Type type;
+    // the raw type of the canonical type
+    private final Class<? super T> rawType;
+    // 64-bit fingerprint of the canonical type
+    private final long fingerprint;
+    // type arguments of a parameterized type, created lazily
+    private TypeLiteral<?>[] typeArguments;
+
+    /**
+     * Constructs a new type literal. Derives represented class from type parameter.
+     * <p>
+     * Clients create an empty anonymous subclass. Doing so embeds the type parameter in the anonymous class's type
+     * hierarchy so we can reconstruct it at runtime despite erasure.
+     * @throws IllegalStateException if the type parameter is not specified
+     */
+    @SuppressWarnings("unchecked")
+    protected TypeLiteral() {
+        this.type = canonicalize(getSuperclassTypeParameter(getClass()));
+        this.rawType = (Class<? super T>) getRawType(this.type);
+        this.fingerprint = fingerprint(this.type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TypeLiteral(Type type) {
+        this.type = canonicalize(type);
+        this.rawType = (Class<? super T>) getRawType(this.type);
+        // fingerprint of a class is computed here, as it is cached using this literal
+        this.fingerprint = this.type instanceof Class ? hash(((Class<?>) type).getName()) : fingerprint(this.type);
+    }
+
+    /**
+     * Gets the type literal for the given type.
+     * @param type the type, which can be a class or any generic type
+     * @return the type literal for the given type
+     */
+    public static TypeLiteral<?> get(Type type) {
+        Objects.requireNonNull(type);
+        return type instanceof Class ? classLiterals.get((Class<?>) type) : new TypeLiteral<>(type);
+    }
+
+    /**
+     * Gets the type literal for the given class.
+     * @param type the class
+     * @param <T>  the type of the class
+     * @return the type literal for the given class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TypeLiteral<T> get(Class<T> type) {
+        return (TypeLiteral<T>) classLiterals.get(Objects.requireNonNull(type));
+    }
+
+    /**
+     * Gets the type literal for the parameterized type of the given raw type and type arguments. For ex:
+     * {@code TypeLiteral.getParameterized(Event.class, Order.class)} returns a literal for {@code Event<Order>}.
+     * @param rawType       the raw type
+     * @param typeArguments the actual type arguments
+     * @return the type literal for the parameterized type
+     * @throws IllegalArgumentException if the number of type arguments does not match the type parameters
+     */
+    public static TypeLiteral<?> getParameterized(Class<?> rawType, Type... typeArguments) {
+        Objects.requireNonNull(rawType);
+        if (rawType.getTypeParameters().length != typeArguments.length) {
+            throw new IllegalArgumentException("Expected " + rawType.getTypeParameters().length
+                    + " type arguments for " + rawType.getName() + ", but got " + typeArguments.length);
+        }
+        return new TypeLiteral<>(new ParameterizedTypeImpl(rawType.getDeclaringClass(), rawType, typeArguments));
+    }
+
+    /**
+     * Gets the raw (non-generic) type for this type.
+     * @return the raw type
+     */
+    public final Class<? super T> getRawType() {
+        return rawType;
+    }
+
+    /**
+     * Gets the underlying {@code Type} instance.
+     * @return the canonical type represented by this literal
+     */
+    public final Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the 64-bit fingerprint of this type, computed once from the canonical type.
+     * @return the fingerprint of this type
+     */
+    public final long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns true if this literal represents a non-generic class.
+     * @return true if the type of this literal is a {@code Class}
+     */
+    public final boolean isRawType() {
+        return type instanceof Class;
+    }
+
+    /**
+     * Gets the type literal of the type argument at the given index, if this literal represents a parameterized type.
+     * @param index the index of the type argument
+     * @return the type literal of the type argument
+     * @throws IllegalStateException if this is not a parameterized type
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public final TypeLiteral<?> getTypeArgument(int index) {
+        if (!(type instanceof ParameterizedType)) {
+            throw new IllegalStateException("Type is not parameterized: " + this);
+        }
+        TypeLiteral<?>[] arguments = typeArguments;
+        if (arguments == null) {
+            Type[] actualTypeArguments = ((ParameterizedType) type).getActualTypeArguments();
+            arguments = new TypeLiteral<?>[actualTypeArguments.length];
+            for (int i = 0; i < actualTypeArguments.length; i++) {
+                arguments[i] = get(actualTypeArguments[i]);
+            }
+            typeArguments = arguments;
+        }
+        return arguments[index];
+    }
+
+    /**
+     * Gets the number of type arguments if this literal represents a parameterized type.
+     * @return the number of type arguments, or {@code 0} if the type is not parameterized
+     */
+    public final int getTypeArgumentCount() {
+        return type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments().length : 0;
+    }
+
+    @Override
+    public final boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof TypeLiteral<?>)) {
+            return false;
+        }
+        TypeLiteral<?> other = (TypeLiteral<?>) obj;
+        return fingerprint == other.fingerprint && typeEquals(type, other.type);
+    }
+
+    @Override
+    public final int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public final String toString() {
+        return type.getTypeName();
+    }
+
+    private static Type getSuperclassTypeParameter(Class<?> subclass) {
+        Type superclass = subclass.getGenericSuperclass();
+        if (!(superclass instanceof ParameterizedType)) {
+            throw new IllegalStateException("Missing type parameter in " + subclass.getName());
+        }
+        return ((ParameterizedType) superclass).getActualTypeArguments()[0];
+    }
+
+    /**
+     * Returns a type that is functionally equal but not necessarily equal according to {@link Object#equals(Object)}.
+     * The returned type is {@link java.io.Serializable}.
+     */
+    private static Type canonicalize(Type type) {
+        if (type instanceof Class) {
+            Class<?> c = (Class<?>) type;
+            return c.isArray() ? new GenericArrayTypeImpl(canonicalize(c.getComponentType())) : c;
+        } else if (type instanceof ParameterizedType) {
+            if (type instanceof ParameterizedTypeImpl) {
+                return type;
+            }
+            ParameterizedType p = (ParameterizedType) type;
+            return new ParameterizedTypeImpl(p.getOwnerType(), p.getRawType(), p.getActualTypeArguments());
+        } else if (type instanceof GenericArrayType) {
+            if (type instanceof GenericArrayTypeImpl) {
+                return type;
+            }
+            return new GenericArrayTypeImpl(((GenericArrayType) type).getGenericComponentType());
+        } else if (type instanceof WildcardType) {
+            if (type instanceof WildcardTypeImpl) {
+                return type;
+            }
+            WildcardType w = (WildcardType) type;
+            return new WildcardTypeImpl(w.getUpperBounds(), w.getLowerBounds());
+        } else {
+            return type; // type variables are used as they are
+        }
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof Class<?>) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            Type componentType = ((GenericArrayType) type).getGenericComponentType();
+            return Array.newInstance(getRawType(componentType), 0).getClass();
+        } else if (type instanceof TypeVariable || type instanceof WildcardType) {
+            return Object.class;
+        }
+        throw new IllegalArgumentException("Expected a Class, ParameterizedType, or GenericArrayType,"
+                + " but <" + type + "> is of type " + type.getClass().getName());
+    }
+
+    private static boolean typeEquals(Type a, Type b) {
+        if (a == b) {
+            return true;
+        } else if (a instanceof Class) {
+            return a.equals(b);
+        } else if (a instanceof ParameterizedType) {
+            if (!(b instanceof ParameterizedType)) {
+                return false;
+            }
+            ParameterizedType pa = (ParameterizedType) a;
+            ParameterizedType pb = (ParameterizedType) b;
+            if (!Objects.equals(pa.getOwnerType(), pb.getOwnerType()) || !pa.getRawType().equals(pb.getRawType())) {
+                return false;
+            } else if (a instanceof ParameterizedTypeImpl && b instanceof ParameterizedTypeImpl) {
+                // canonical types are compared without copying their type arguments, when used as map keys
+                return typesEqual(((ParameterizedTypeImpl) a).typeArguments, ((ParameterizedTypeImpl) b).typeArguments);
+            }
+            return typesEqual(pa.getActualTypeArguments(), pb.getActualTypeArguments());
+        } else if (a instanceof GenericArrayType) {
+            return b instanceof GenericArrayType && typeEquals(((GenericArrayType) a).getGenericComponentType(),
+                    ((GenericArrayType) b).getGenericComponentType());
+        } else if (a instanceof WildcardType) {
+            if (!(b instanceof WildcardType)) {
+                return false;
+            }
+            WildcardType wa = (WildcardType) a;
+            WildcardType wb = (WildcardType) b;
+            return typesEqual(wa.getUpperBounds(), wb.getUpperBounds())
+                    && typesEqual(wa.getLowerBounds(), wb.getLowerBounds());
+        } else if (a instanceof TypeVariable) {
+            if (!(b instanceof TypeVariable)) {
+                return false;
+            }
+            TypeVariable<?> va = (TypeVariable<?>) a;
+            TypeVariable<?> vb = (TypeVariable<?>) b;
+            return va.getGenericDeclaration().equals(vb.getGenericDeclaration()) && va.getName().equals(vb.getName());
+        }
+        return false;
+    }
+
+    private static boolean typesEqual(Type[] a, Type[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (!typeEquals(a[i], b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the 64-bit fingerprint of the canonical type. Fingerprints of classes are reused from their cached type
+     * literals, so that the names of classes are hashed only once.
+     */
+    private static long fingerprint(Type type) {
+        if (type instanceof Class) {
+            return classLiterals.get((Class<?>) type).fingerprint;
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType p = (ParameterizedType) type;
+            long result = mix(0x9E3779B97F4A7C15L, fingerprint(p.getRawType()));
+            if (p.getOwnerType() != null) {
+                result = mix(result, fingerprint(p.getOwnerType()));
+            }
+            for (Type argument : p.getActualTypeArguments()) {
+                result = mix(result, fingerprint(argument));
+            }
+            return result;
+        } else if (type instanceof GenericArrayType) {
+            return mix(0xC2B2AE3D27D4EB4FL, fingerprint(((GenericArrayType) type).getGenericComponentType()));
+        } else if (type instanceof WildcardType) {
+            WildcardType w = (WildcardType) type;
+            long result = 0x165667B19E3779F9L;
+            for (Type bound : w.getUpperBounds()) {
+                result = mix(result, fingerprint(bound));
+            }
+            for (Type bound : w.getLowerBounds()) {
+                result = mix(~result, fingerprint(bound));
+            }
+            return result;
+        } else if (type instanceof TypeVariable) {
+            TypeVariable<?> v = (TypeVariable<?>) type;
+            return mix(hash(v.getGenericDeclaration().toString()), hash(v.getName()));
+        }
+        return hash(type.getTypeName());
+    }
+
+    // 64-bit FNV-1a hash of the given string
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // combines two 64-bit hashes, using the finalizer of MurmurHash3 to spread the bits
+    private static long mix(long result, long value) {
+        long h = result * 31 + value;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85EC3L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class ParameterizedTypeImpl implements ParameterizedType, Serializable {
+        private static final long serialVersionUID = 0;
+        private final Type ownerType;
+        private final Type rawType;
+        private final Type[] typeArguments;
+
+        ParameterizedTypeImpl(Type ownerType, Type rawType, Type... typeArguments) {
+            this.ownerType = ownerType == null ? null : canonicalize(ownerType);
+            this.rawType = canonicalize(rawType);
+            this.typeArguments = typeArguments.clone();
+            for (int t = 0, length = this.typeArguments.length; t < length; t++) {
+                Objects.requireNonNull(this.typeArguments[t], "type argument");
+                if (this.typeArguments[t] instanceof Class && ((Class<?>) this.typeArguments[t]).isPrimitive()) {
+                    throw new IllegalArgumentException("Primitive types are not allowed in type parameters: "
+                            + this.typeArguments[t]);
+                }
+                this.typeArguments[t] = canonicalize(this.typeArguments[t]);
+            }
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return typeArguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return ownerType;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ParameterizedType && typeEquals(this, (ParameterizedType) other);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(typeArguments) ^ rawType.hashCode() ^ Objects.hashCode(ownerType);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(rawType.getTypeName());
+            if (typeArguments.length > 0) {
+                sb.append('<').append(typeArguments[0].getTypeName());
+                for (int i = 1; i < typeArguments.length; i++) {
+                    sb.append(", ").append(typeArguments[i].getTypeName());
+                }
+                sb.append('>');
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class GenericArrayTypeImpl implements GenericArrayType, Serializable {
+        private static final long serialVersionUID = 0;
+        private final Type componentType;
+
+        GenericArrayTypeImpl(Type componentType) {
+            this.componentType = canonicalize(componentType);
+        }
+
+        @Override
+        public Type getGenericComponentType() {
+            return componentType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GenericArrayType && typeEquals(this, (GenericArrayType) o);
+        }
+
+        @Override
+        public int hashCode() {
+            return componentType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return componentType.getTypeName() + "[]";
+        }
+    }
+
+    private static final class WildcardTypeImpl implements WildcardType, Serializable {
+        private static final long serialVersionUID = 0;
+        private final Type[] upperBounds;
+        private final Type[] lowerBounds;
+
+        WildcardTypeImpl(Type[] upperBounds, Type[] lowerBounds) {
+            this.upperBounds = new Type[upperBounds.length];
+            for (int i = 0; i < upperBounds.length; i++) {
+                this.upperBounds[i] = canonicalize(upperBounds[i]);
+            }
+            this.lowerBounds = new Type[lowerBounds.length];
+            for (int i = 0; i < lowerBounds.length; i++) {
+                this.lowerBounds[i] = canonicalize(lowerBounds[i]);
+            }
+        }
+
+        @Override
+        public Type[] getUpperBounds() {
+            return upperBounds.clone();
+        }
+
+        @Override
+        public Type[] getLowerBounds() {
+            return lowerBounds.clone();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof WildcardType && typeEquals(this, (WildcardType) other);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(lowerBounds) ^ Arrays.hashCode(upperBounds);
+        }
+
+        @Override
+        public String toString() {
+            if (lowerBounds.length == 1) {
+                return "? super " + lowerBounds[0].getTypeName();
+            } else if (upperBounds.length == 1 && upperBounds[0] == Object.class) {
+                return "?";
+            }
+            return "? extends " + upperBounds[0].getTypeName();
+        }
+    }
+}
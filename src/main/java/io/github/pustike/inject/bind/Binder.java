@@ -20,6 +20,7 @@ import java.util.function.Predicate;
 
 import io.github.pustike.inject.BindingKey;
 import io.github.pustike.inject.Scope;
+import io.github.pustike.inject.TypeLiteral;
 import io.github.pustike.inject.spi.BindingListener;
 import io.github.pustike.inject.spi.InjectionListener;
 
@@ -36,6 +37,15 @@ public interface Binder {
      */
     <T> AnnotatedBindingBuilder<T> bind(Class<T> instanceType);
 
+    /**
+     * Binds the given generic type which can be further annotated in the {@link AnnotatedBindingBuilder}. For ex:
+     * <pre>{@code binder.bind(new TypeLiteral<Cache<String, User>>() {}).to(UserCache.class); }</pre>
+     * @param typeLiteral the generic instance type
+     * @param <T>         the type specified in this binding
+     * @return the annotated binding builder
+     */
+    <T> AnnotatedBindingBuilder<T> bind(TypeLiteral<T> typeLiteral);
+
     /**
      * Binds the key which needs to be linked to a target in the {@link LinkedBindingBuilder}.
      * @param key the binding key
@@ -15,24 +15,25 @@
  */
 package io.github.pustike.inject.events;
 
-import java.util.ArrayDeque;
-import java.util.Iterator;
-import java.util.Queue;
+import java.util.Arrays;
 
 /**
  * Handler for dispatching events to observers, providing different event ordering guarantees that make sense for
  * different situations.
  */
 final class Dispatcher {
-    // Per-thread queue of events to dispatch.
-    private static final ThreadLocal<Queue<EventData>> queue = ThreadLocal.withInitial(ArrayDeque::new);
-    // Per-thread dispatch state, used to avoid reentrant event dispatching.
-    private static final ThreadLocal<Boolean> dispatching = ThreadLocal.withInitial(() -> false);
+    // Per-thread dispatch state, with the queue of events posted reentrantly while dispatching an event. It is shared
+    // by all event buses, so that events are dispatched in order on a thread, and each queued event is kept with the
+    // dispatcher of the event bus it is posted to.
+    private static final ThreadLocal<DispatchState> dispatchState = ThreadLocal.withInitial(DispatchState::new);
     // the eventBus to invoke the event handler
     private final EventBus eventBus;
+    // delivers events to many observers in parallel, or null when it is not configured
+    private final ParallelFanOut parallelFanOut;
 
-    Dispatcher(EventBus eventBus) {
+    Dispatcher(EventBus eventBus, ParallelFanOut parallelFanOut) {
         this.eventBus = eventBus;
+        this.parallelFanOut = parallelFanOut;
     }
 
     /**
@@ -46,34 +47,101 @@ final class Dispatcher {
      * that posts the event), this yields a breadth-first dispatch order on each thread. That is, all observers of a
      * single event A will be called before any observers of any events B and C that are posted to the event bus by
      * the observers to A.
+     *
+     * <p>When parallel fan-out is configured, an event with many observers is delivered to them in parallel, and
+     * events published by observers running on other threads are dispatched on those threads.
+     *
+     * <p>The per-thread state is reused for all events, and the queue is allocated only when events are posted
+     * reentrantly, so that dispatching an event which is not posted reentrantly doesn't allocate any object.
      */
-    void dispatch(Object event, Iterator<Observer> observers) {
-        Queue<EventData> queueForThread = queue.get();
-        queueForThread.offer(new EventData(event, observers));
-
-        if (!dispatching.get()) {
-            dispatching.set(true);
-            try {
-                EventData nextEvent;
-                while ((nextEvent = queueForThread.poll()) != null) {
-                    while (nextEvent.observers.hasNext()) {
-                        eventBus.invokeObserverMethod(nextEvent.event, nextEvent.observers.next());
-                    }
-                }
-            } finally {
-                dispatching.remove();
-                queue.remove();
+    void dispatch(Object event, Observer[] observers) {
+        DispatchState state = dispatchState.get();
+        if (state.dispatching) {
+            state.offer(this, event, observers);
+            return;
+        }
+        state.dispatching = true;
+        try {
+            dispatchEvent(event, observers);
+            while (state.head != state.tail) {
+                int index = state.head;
+                Dispatcher nextDispatcher = state.dispatchers[index];
+                Object nextEvent = state.events[index];
+                Observer[] nextObservers = state.observers[index];
+                state.dispatchers[index] = null;
+                state.events[index] = null;
+                state.observers[index] = null;
+                state.head = (index + 1) & (state.events.length - 1);
+                nextDispatcher.dispatchEvent(nextEvent, nextObservers);
             }
+        } finally {
+            state.dispatching = false;
+            state.clear();
         }
     }
 
-    private static final class EventData {
-        private final Object event;
-        private final Iterator<Observer> observers;
+    private void dispatchEvent(Object event, Observer[] observers) {
+        if (parallelFanOut != null && parallelFanOut.accepts(event, observers.length)) {
+            parallelFanOut.deliver(eventBus, event, observers);
+            return;
+        }
+        for (Observer observer : observers) {
+            eventBus.deliverEvent(event, observer);
+        }
+    }
 
-        private EventData(Object event, Iterator<Observer> observers) {
-            this.event = event;
-            this.observers = observers;
+    /**
+     * Dispatch state of a thread, with a circular queue of events, their observers and the dispatchers of the event
+     * buses they are posted to, which grows as needed.
+     */
+    private static final class DispatchState {
+        private static final int INITIAL_CAPACITY = 8; // must be a power of two
+        private boolean dispatching;
+        private Dispatcher[] dispatchers;
+        private Object[] events;
+        private Observer[][] observers;
+        private int head, tail;
+
+        void offer(Dispatcher dispatcher, Object event, Observer[] eventObservers) {
+            if (events == null) {
+                dispatchers = new Dispatcher[INITIAL_CAPACITY];
+                events = new Object[INITIAL_CAPACITY];
+                observers = new Observer[INITIAL_CAPACITY][];
+            }
+            dispatchers[tail] = dispatcher;
+            events[tail] = event;
+            observers[tail] = eventObservers;
+            tail = (tail + 1) & (events.length - 1);
+            if (tail == head) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            int capacity = events.length, length = capacity - head;
+            Dispatcher[] newDispatchers = new Dispatcher[capacity << 1];
+            System.arraycopy(dispatchers, head, newDispatchers, 0, length);
+            System.arraycopy(dispatchers, 0, newDispatchers, length, head);
+            Object[] newEvents = new Object[capacity << 1];
+            Observer[][] newObservers = new Observer[capacity << 1][];
+            System.arraycopy(events, head, newEvents, 0, length);
+            System.arraycopy(events, 0, newEvents, length, head);
+            System.arraycopy(observers, head, newObservers, 0, length);
+            System.arraycopy(observers, 0, newObservers, length, head);
+            dispatchers = newDispatchers;
+            events = newEvents;
+            observers = newObservers;
+            head = 0;
+            tail = capacity;
+        }
+
+        void clear() {
+            if (head != tail) { // events are not dispatched when an observer fails
+                Arrays.fill(dispatchers, null);
+                Arrays.fill(events, null);
+                Arrays.fill(observers, null);
+            }
+            head = tail = 0;
         }
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffer of events accumulated for a batch observer, which are delivered to it as a list when the batch size is
+ * reached, or when the maximum delay after the first event of the batch is elapsed. Events are added to a lock-free
+ * queue, and a batch is claimed by subtracting its size from the number of events atomically before taking its events
+ * from the queue, so that concurrent publishers don't deliver partial batches for the same window. Only the first
+ * event after a flush schedules the next timed flush, and a timed flush of an earlier window is ignored when the batch
+ * is delivered because it is full.
+ */
+final class EventBatch {
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final ConcurrentLinkedQueue<Object> events;
+    // the number of events in the queue which are not yet claimed by a flush
+    private final AtomicInteger size;
+    private final AtomicBoolean flushScheduled;
+    // incremented when a batch is flushed, so that a timed flush scheduled for an earlier batch is ignored
+    private final AtomicLong generation;
+
+    EventBatch(int batchSize, long maxDelayMillis) {
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.events = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger();
+        this.flushScheduled = new AtomicBoolean();
+        this.generation = new AtomicLong();
+    }
+
+    /**
+     * Adds the event to this batch.
+     * @return a full batch of events to be delivered, or {@code null} if the batch size is not reached
+     */
+    List<Object> add(Object event) {
+        events.offer(event);
+        for (int current = size.incrementAndGet(); current >= batchSize; current = size.get()) {
+            if (size.compareAndSet(current, current - batchSize)) {
+                generation.incrementAndGet();
+                flushScheduled.set(false); // the remaining events schedule a flush after the maximum delay
+                return drain(batchSize);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks a timed flush as scheduled, when there are pending events and it is not scheduled already.
+     * @return the generation of the batch to be flushed, or {@code -1} if a timed flush should not be scheduled
+     */
+    long scheduleFlush() {
+        if (maxDelayMillis > 0 && size.get() > 0 && flushScheduled.compareAndSet(false, true)) {
+            return generation.get();
+        }
+        return -1;
+    }
+
+    long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Removes the pending events when the timed flush of the given generation is run, if the batch is not flushed
+     * after it was scheduled.
+     * @return the pending events, or {@code null} if there are none or the timed flush is stale
+     */
+    List<Object> flush(long flushGeneration) {
+        if (!generation.compareAndSet(flushGeneration, flushGeneration + 1)) {
+            return null;
+        }
+        flushScheduled.set(false); // events added after this schedule another flush
+        return drain(size.getAndSet(0));
+    }
+
+    /**
+     * Removes all pending events, when the event bus is closed.
+     * @return the pending events, or {@code null} if there are none
+     */
+    List<Object> flush() {
+        generation.incrementAndGet();
+        flushScheduled.set(false);
+        return drain(size.getAndSet(0));
+    }
+
+    /**
+     * Takes the given number of events claimed by the caller from the queue, which are already added to it.
+     */
+    private List<Object> drain(int claimedSize) {
+        if (claimedSize == 0) {
+            return null;
+        }
+        List<Object> batch = new ArrayList<>(claimedSize);
+        for (int i = 0; i < claimedSize; i++) {
+            batch.add(events.poll());
+        }
+        return batch;
+    }
+}
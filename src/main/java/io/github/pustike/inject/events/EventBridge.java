@@ -0,0 +1,467 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bridge which forwards events of selected types, published to the local {@link EventBus}, to event buses in peer
+ * processes on the same host, and publishes events received from them on the local event bus. Peers are connected
+ * using Unix domain sockets (Java 16 or higher), or using TCP sockets when a network address is used. For ex:
+ * <pre>{@code
+ * EventBridge bridge = EventBridge.create(eventBus, codec, OrderCreated.class, OrderShipped.class);
+ * bridge.bind(Path.of("/run/orders/events.sock")); // in one process
+ * bridge.connect(Path.of("/run/orders/events.sock")); // in other processes
+ * }</pre>
+ * <p>
+ * Events are encoded using the {@link EventCodec} and sent as frames, with the length of the encoded event followed
+ * by its bytes. Frames are written to peers in batches by a single writer thread, so that publishing an event only
+ * adds its frame to a bounded queue, and the overflow policy is applied when the queue is full. A peer which doesn't
+ * accept a batch of frames within the write timeout is disconnected, so that a slow peer doesn't stop forwarding
+ * events to other peers. Each peer is read by its own thread into a direct buffer, from which events are decoded
+ * without copying them, and a peer sending a frame with an invalid length is disconnected. Received events are
+ * delivered to local observers, and they are not forwarded again.
+ */
+public final class EventBridge implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FRAME_HEADER_SIZE = 4;
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    private static final Duration DEFAULT_WRITE_TIMEOUT = Duration.ofSeconds(5);
+    private static final long POLL_MILLIS = 100;
+    // added to the outgoing queue when the bridge is closed, to stop the writer after writing the queued frames
+    private static final byte[] END_OF_FRAMES = new byte[0];
+    private final EventBus eventBus;
+    private final EventCodec codec;
+    private final Set<Class<?>> forwardedTypes;
+    private final OverflowPolicy overflowPolicy;
+    private final long writeTimeoutNanos;
+    private final BlockingQueue<byte[]> outgoingFrames;
+    private final LongAdder droppedCount;
+    private final List<SocketChannel> peers;
+    private final List<ServerSocketChannel> serverChannels;
+    private final List<Path> socketFiles;
+    private final Thread writerThread;
+    // the peer being written by the writer thread, which is disconnected by the watchdog when its write times out
+    private volatile PendingWrite pendingWrite;
+    private volatile boolean running;
+
+    private EventBridge(EventBus eventBus, EventCodec codec, Set<Class<?>> forwardedTypes, int queueCapacity,
+            OverflowPolicy overflowPolicy, Duration writeTimeout) {
+        this.eventBus = eventBus;
+        this.codec = codec;
+        this.forwardedTypes = forwardedTypes;
+        this.overflowPolicy = overflowPolicy;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.outgoingFrames = new ArrayBlockingQueue<>(queueCapacity);
+        this.droppedCount = new LongAdder();
+        this.peers = new CopyOnWriteArrayList<>();
+        this.serverChannels = new CopyOnWriteArrayList<>();
+        this.socketFiles = new CopyOnWriteArrayList<>();
+        this.running = true;
+        this.writerThread = new Thread(this::writeFrames, "eventbridge-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        startThread(this::evictSlowPeers, "eventbridge-watchdog");
+    }
+
+    /**
+     * Creates a bridge for the event bus, which forwards events of the given types to peers. Up to 8192 events are
+     * queued to be written to peers, publishers are blocked while the queue is full, and a peer is disconnected if
+     * it doesn't accept the events written to it within 5 seconds.
+     * @param eventBus       the local event bus
+     * @param codec          the codec to encode forwarded events and decode received events
+     * @param forwardedTypes the exact classes of events forwarded to peers
+     * @return the new event bridge
+     */
+    public static EventBridge create(EventBus eventBus, EventCodec codec, Class<?>... forwardedTypes) {
+        return create(eventBus, codec, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK, DEFAULT_WRITE_TIMEOUT,
+                forwardedTypes);
+    }
+
+    /**
+     * Creates a bridge for the event bus, which forwards events of the given types to peers, using a queue of events
+     * to be written to peers with the given capacity.
+     * @param eventBus       the local event bus
+     * @param codec          the codec to encode forwarded events and decode received events
+     * @param queueCapacity  the maximum number of events queued to be written to peers
+     * @param overflowPolicy the policy applied when an event is forwarded while the queue is full
+     * @param writeTimeout   the time after which a peer that doesn't accept the events written to it is disconnected
+     * @param forwardedTypes the exact classes of events forwarded to peers
+     * @return the new event bridge
+     * @throws IllegalArgumentException if the queue capacity or the write timeout is not positive, or the overflow
+     *                                  policy is caller runs
+     */
+    public static EventBridge create(EventBus eventBus, EventCodec codec, int queueCapacity,
+            OverflowPolicy overflowPolicy, Duration writeTimeout, Class<?>... forwardedTypes) {
+        Objects.requireNonNull(eventBus);
+        Objects.requireNonNull(codec);
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("invalid queue capacity: " + queueCapacity);
+        } else if (Objects.requireNonNull(overflowPolicy) == OverflowPolicy.CALLER_RUNS) {
+            throw new IllegalArgumentException("The caller runs policy is not supported by event bridges");
+        } else if (writeTimeout.isNegative() || writeTimeout.isZero()) {
+            throw new IllegalArgumentException("invalid write timeout: " + writeTimeout);
+        }
+        EventBridge bridge = new EventBridge(eventBus, codec, Set.of(forwardedTypes), queueCapacity, overflowPolicy,
+                writeTimeout);
+        eventBus.addBridge(bridge);
+        return bridge;
+    }
+
+    /**
+     * Listens for peers connecting to the Unix domain socket at the given path. An existing file at this path, like
+     * the socket of a previous process, is deleted and the socket file is deleted when this bridge is closed.
+     * @param socketPath the path of the socket file
+     * @throws UnsupportedOperationException if Unix domain sockets are not supported by the runtime
+     * @throws IOException if the socket can not be bound
+     */
+    public void bind(Path socketPath) throws IOException {
+        SocketAddress address = getUnixDomainAddress(socketPath);
+        Files.deleteIfExists(socketPath);
+        bind(address);
+        socketFiles.add(socketPath);
+    }
+
+    /**
+     * Listens for peers connecting to the given socket address, which is a Unix domain socket address or a network
+     * address, like a loopback address.
+     * @param address the address to bind
+     * @throws IOException if the socket can not be bound
+     */
+    public void bind(SocketAddress address) throws IOException {
+        checkRunning();
+        ServerSocketChannel serverChannel = openServerChannel(address);
+        serverChannel.bind(address);
+        serverChannels.add(serverChannel);
+        startThread(() -> acceptPeers(serverChannel), "eventbridge-acceptor");
+    }
+
+    /**
+     * Connects to the peer listening on the Unix domain socket at the given path.
+     * @param socketPath the path of the socket file
+     * @throws UnsupportedOperationException if Unix domain sockets are not supported by the runtime
+     * @throws IOException if the peer can not be connected
+     */
+    public void connect(Path socketPath) throws IOException {
+        connect(getUnixDomainAddress(socketPath));
+    }
+
+    /**
+     * Connects to the peer listening on the given socket address.
+     * @param address the address of the peer
+     * @throws IOException if the peer can not be connected
+     */
+    public void connect(SocketAddress address) throws IOException {
+        checkRunning();
+        addPeer(SocketChannel.open(address));
+    }
+
+    /**
+     * Gets the number of peers connected to this bridge.
+     * @return the number of connected peers
+     */
+    public int getPeerCount() {
+        return peers.size();
+    }
+
+    /**
+     * Gets the number of events which are not forwarded to peers, because the queue was full or the encoded event is
+     * larger than the maximum frame size.
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Adds the frame of the event to the outgoing queue, if its type is forwarded and there are connected peers.
+     */
+    void forward(Object event) {
+        if (!forwardedTypes.contains(event.getClass()) || peers.isEmpty() || !running) {
+            return;
+        }
+        byte[] encodedEvent = codec.encode(event);
+        if (encodedEvent == null) {
+            return;
+        } else if (encodedEvent.length > MAX_FRAME_SIZE) {
+            droppedCount.increment(); // peers would disconnect on receiving it
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                if (!outgoingFrames.offer(encodedEvent)) {
+                    droppedCount.increment();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!outgoingFrames.offer(encodedEvent)) {
+                    if (outgoingFrames.poll() != null) {
+                        droppedCount.increment();
+                    }
+                }
+                break;
+            default: // BLOCK
+                try {
+                    while (!outgoingFrames.offer(encodedEvent, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+        }
+    }
+
+    private void writeFrames() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        List<byte[]> frames = new ArrayList<>();
+        for (boolean endOfFrames = false; !endOfFrames; ) {
+            try {
+                frames.add(outgoingFrames.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            outgoingFrames.drainTo(frames);
+            for (byte[] frame : frames) {
+                if (frame == END_OF_FRAMES || !running && Thread.currentThread().isInterrupted()) {
+                    endOfFrames = true;
+                    break;
+                }
+                if (buffer.remaining() < FRAME_HEADER_SIZE + frame.length) {
+                    writeToPeers(buffer);
+                    if (buffer.capacity() < FRAME_HEADER_SIZE + frame.length) {
+                        buffer = ByteBuffer.allocateDirect(FRAME_HEADER_SIZE + frame.length);
+                    }
+                }
+                buffer.putInt(frame.length).put(frame);
+            }
+            frames.clear();
+            writeToPeers(buffer);
+        }
+    }
+
+    private void writeToPeers(ByteBuffer buffer) {
+        buffer.flip();
+        for (SocketChannel peer : peers) {
+            ByteBuffer peerBuffer = buffer.duplicate();
+            pendingWrite = new PendingWrite(peer, System.nanoTime() + writeTimeoutNanos);
+            try {
+                while (peerBuffer.hasRemaining()) {
+                    peer.write(peerBuffer);
+                }
+            } catch (IOException e) { // including the channel closed by the watchdog, when the write timed out
+                removePeer(peer);
+            } finally {
+                pendingWrite = null;
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Disconnects the peer being written by the writer thread, when it doesn't accept the frames within the write
+     * timeout, so that the writer continues with other peers.
+     */
+    private void evictSlowPeers() {
+        long checkMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos) / 4);
+        while (writerThread.isAlive()) {
+            PendingWrite write = pendingWrite;
+            if (write != null && System.nanoTime() - write.deadline > 0) {
+                removePeer(write.peer); // a blocked write fails with AsynchronousCloseException
+            }
+            try {
+                Thread.sleep(Math.min(checkMillis, POLL_MILLIS));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void acceptPeers(ServerSocketChannel serverChannel) {
+        while (running) {
+            try {
+                addPeer(serverChannel.accept());
+            } catch (IOException e) {
+                if (!serverChannel.isOpen()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void addPeer(SocketChannel peer) {
+        peers.add(peer);
+        startThread(() -> readFrames(peer), "eventbridge-reader");
+    }
+
+    private void removePeer(SocketChannel peer) {
+        peers.remove(peer);
+        try {
+            peer.close();
+        } catch (IOException e) {
+            // ignore, as the peer is removed
+        }
+    }
+
+    private void readFrames(SocketChannel peer) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try {
+            while (peer.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+                    int frameLength = buffer.getInt(buffer.position());
+                    if (frameLength < 0 || frameLength > MAX_FRAME_SIZE) {
+                        return; // the peer doesn't follow the protocol, and it is disconnected
+                    } else if (buffer.remaining() < FRAME_HEADER_SIZE + frameLength) {
+                        break;
+                    }
+                    int start = buffer.position() + FRAME_HEADER_SIZE, end = start + frameLength;
+                    ByteBuffer encodedEvent = buffer.duplicate().position(start).limit(end).slice();
+                    buffer.position(end);
+                    try {
+                        Object event = codec.decode(encodedEvent.asReadOnlyBuffer());
+                        eventBus.routeEvent(event, ObserverRegistry.getEventType(event));
+                    } catch (RuntimeException | Error e) { // report it without disconnecting the peer
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+                if (buffer.hasRemaining() && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                    // the frame is larger than the buffer
+                    int frameLength = buffer.getInt(0);
+                    buffer = ByteBuffer.allocateDirect(FRAME_HEADER_SIZE + frameLength).put(buffer);
+                } else {
+                    buffer.compact();
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // the peer is closed
+        } catch (IOException e) {
+            // the peer is disconnected
+        } finally {
+            removePeer(peer);
+        }
+    }
+
+    private static final class PendingWrite {
+        private final SocketChannel peer;
+        private final long deadline;
+
+        PendingWrite(SocketChannel peer, long deadline) {
+            this.peer = peer;
+            this.deadline = deadline;
+        }
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("The event bridge is closed");
+        }
+    }
+
+    private static void startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static ServerSocketChannel openServerChannel(SocketAddress address) throws IOException {
+        if (address instanceof InetSocketAddress) {
+            return ServerSocketChannel.open();
+        }
+        try { // ServerSocketChannel.open(ProtocolFamily) is available in Java 15 or higher
+            ProtocolFamily protocolFamily = StandardProtocolFamily.valueOf("UNIX");
+            return (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                    .invoke(null, protocolFamily);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new UnsupportedOperationException("Unix domain sockets are not supported by this runtime: "
+                    + Runtime.version());
+        }
+    }
+
+    private static SocketAddress getUnixDomainAddress(Path socketPath) {
+        try { // UnixDomainSocketAddress is available in Java 16 or higher
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) addressClass.getMethod("of", Path.class).invoke(null, socketPath);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unix domain sockets are not supported by this runtime: "
+                    + Runtime.version());
+        }
+    }
+
+    /**
+     * Stops forwarding events, writes the queued events to peers and closes all connections. Socket files created by
+     * this bridge are deleted. Queued events which are not written to peers within the write timeout are discarded.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        eventBus.removeBridge(this);
+        try {
+            long timeoutMillis = TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos);
+            if (!outgoingFrames.offer(END_OF_FRAMES, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                writerThread.interrupt(); // the queue is not drained by the writer
+            }
+            writerThread.join(timeoutMillis);
+            writerThread.interrupt(); // stops the writer after writing the current batch
+        } catch (InterruptedException e) {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        for (ServerSocketChannel serverChannel : serverChannels) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // ignore, as the bridge is closed
+            }
+        }
+        for (SocketChannel peer : peers) {
+            removePeer(peer);
+        }
+        for (Path socketFile : socketFiles) {
+            try {
+                Files.deleteIfExists(socketFile);
+            } catch (IOException e) {
+                // ignore, as the bridge is closed
+            }
+        }
+    }
+}
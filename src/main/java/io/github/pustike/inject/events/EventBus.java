@@ -15,12 +15,26 @@
  */
 package io.github.pustike.inject.events;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.Iterator;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import jakarta.inject.Inject;
 
 import io.github.pustike.inject.Injector;
+import io.github.pustike.inject.TypeLiteral;
 import io.github.pustike.inject.bind.Module;
 
 /**
@@ -32,37 +46,213 @@ import io.github.pustike.inject.bind.Module;
  * <pre>{@code Injector injector = Injectors.create(EventBus.createModule(), otherModules); }</pre>
  *
  * An instance of the EventBus can be then obtained from Injector or by declaring it as a dependency to be injected.
+ *
+ * <p>Events are delivered to observers in one of the following modes, with different ordering guarantees:
+ * <ul>
+ * <li><b>Synchronous</b> (default): observers are invoked on the publishing thread, before {@link #publish(Object)}
+ * returns. All events published on a single thread are delivered in the order they are published, and events
+ * published by observers are delivered after the current event is delivered to all observers.</li>
+ * <li><b>Asynchronous</b>: observers marked with {@link Observes#async()} or {@link Observes#executor()} are invoked
+ * on an executor. Events published on a single thread are submitted in the order they are published, and they are
+ * delivered in this order only if the executor runs tasks sequentially, for ex: a single thread executor.</li>
+ * <li><b>Virtual threads</b>: when configured using {@link EventBusModule#withVirtualThreads()}, each asynchronous
+ * invocation runs on its own virtual thread, and there is no ordering guarantee between events.</li>
+ * <li><b>Ring buffer</b>: when configured using {@link EventBusModule#withRingBuffer(int, int, WaitStrategy,
+ * OverflowPolicy)}, events are added to a bounded ring buffer and delivered on its consumer threads. Events
+ * published on a single thread are delivered in order only when there is one consumer thread.</li>
+ * <li><b>Partitioned</b>: when configured using {@link EventBusModule#withPartitions(int, int, WaitStrategy,
+ * OverflowPolicy)}, events published using {@link #publishOrdered(Object, Object)} are delivered on the consumer
+ * thread of the partition selected by their key. Events of the same key published on a single thread are delivered in
+ * order, and events of different keys can be delivered in parallel.</li>
+ * <li><b>Coalesced</b>: when configured using {@link EventBusModule#withCoalescing(Class, java.util.function.Function,
+ * java.time.Duration)}, events of a type with the same coalescing key, published within a window, are merged into a
+ * single event delivered on the scheduler thread of the event bus, in one of the above modes, when the window ends.
+ * </li>
+ * <li><b>Parallel fan-out</b>: when configured using {@link EventBusModule#withParallelFanOut(int)}, an event with
+ * many observers is delivered to them in parallel, and the event is delivered to all of them before the next event
+ * published on the same thread.</li>
+ * <li><b>Parent bus</b>: when configured using {@link EventBusModule#withParentBus()} in a child injector, events
+ * are also delivered to observers of the event bus in the parent injector and its ancestors, after the observers of
+ * the child, in the delivery mode of the child event bus.</li>
+ * <li><b>Bridged</b>: events of types forwarded by an {@link EventBridge} are also sent to event buses in peer
+ * processes, and events received from peers are delivered to local observers.</li>
+ * <li><b>Publish async</b>: {@link #publishAsync(Object)} invokes all observers of an event concurrently on their
+ * executors, without any ordering guarantee, and returns a future that completes when all of them finish.</li>
+ * </ul>
  */
 public final class EventBus {
     private final Injector injector;
     private final ObserverRegistry registry;
     private final Dispatcher dispatcher;
+    private final ExecutorService ownedExecutor;
+    private final Executor executor;
+    private final RingBufferDispatcher ringBuffer;
+    private final PartitionedDispatcher partitions;
+    private final EventCoalescer coalescer;
+    private final EventJournal journal;
+    private final EventBus parent;
+    private final ConcurrentMap<TypeLiteral<?>, MergedObservers> mergedObserversMap;
+    private final ConcurrentMap<Annotation, ConcurrentMap<TypeLiteral<?>, MergedObservers>> qualifiedMergedObserversMap;
+    private volatile ScheduledExecutorService batchScheduler;
+    private volatile EventBridge[] bridges;
+    private final Set<EventPublisher.EventSubscription<?>> flowSubscriptions;
 
     /**
-     * Constructs EventBus with given injector and registry.
+     * Constructs EventBus with given injector, registry and the options configured in module.
      * @param injector the injector
      * @param registry the observer registry
+     * @param module   the event bus module
      */
     @Inject
-    EventBus(Injector injector, ObserverRegistry registry) {
+    EventBus(Injector injector, ObserverRegistry registry, EventBusModule module) {
         this.injector = Objects.requireNonNull(injector);
         this.registry = Objects.requireNonNull(registry);
-        this.dispatcher = new Dispatcher(this);
+        registry.setInjector(injector);
+        this.dispatcher = new Dispatcher(this, module.getParallelFanOut());
+        this.ownedExecutor = module.createOwnedExecutor();
+        this.executor = ownedExecutor != null ? ownedExecutor : module.getExecutor();
+        this.ringBuffer = module.createRingBuffer(this, dispatcher);
+        this.partitions = module.createPartitions(this, dispatcher);
+        this.coalescer = module.createCoalescer(this);
+        this.journal = module.createJournal();
+        Injector parentInjector = module.isParentBus() ? injector.getParent() : null;
+        this.parent = parentInjector != null ? parentInjector.getIfPresent(EventBus.class).orElse(null) : null;
+        if (parent != null) {
+            registry.shareModificationCount(parent.registry);
+        }
+        this.mergedObserversMap = parent != null ? new ConcurrentHashMap<>() : null;
+        this.qualifiedMergedObserversMap = parent != null ? new ConcurrentHashMap<>() : null;
+        this.bridges = new EventBridge[0];
+        this.flowSubscriptions = ConcurrentHashMap.newKeySet();
     }
 
     /**
      * Create a new {@link Module} which binds the EventBus in {@link jakarta.inject.Singleton} scope. And adds a
      * {@link io.github.pustike.inject.spi.BindingListener} which visits on all types to find and register methods
      * annotated with {@link Observes}.
-     * @return the new event bus module
+     * @return the new event bus module with default options
+     * @see EventBusModule
      */
     public static Module createModule() {
-        return binder -> {
-            binder.bind(EventBus.class).asLazySingleton();
-            ObserverRegistry registry = new ObserverRegistry();
-            binder.bind(ObserverRegistry.class).toInstance(registry);
-            binder.addBindingListener(targetClass -> true, registry::register);
-        };
+        return new EventBusModule();
+    }
+
+    /**
+     * Subscribes the given instance to receive events, by registering all its methods annotated with {@link Observes}.
+     * This allows objects created outside the injector, like session handlers, to observe events until the returned
+     * subscription is closed. The event bus keeps a strong reference to the subscriber while it is subscribed.
+     * @param subscriber the instance with observer methods
+     * @return the subscription, which unregisters the observer methods when it is closed
+     * @throws IllegalArgumentException if the subscriber doesn't declare any observer method
+     */
+    public Subscription subscribe(Object subscriber) {
+        return registry.subscribe(Objects.requireNonNull(subscriber), false);
+    }
+
+    /**
+     * Subscribes the given instance to receive events, like {@link #subscribe(Object)}, but holds it using a weak
+     * reference. So that the subscriber is unregistered when it is garbage collected, without closing the
+     * subscription, and abandoned subscribers don't leak.
+     * @param subscriber the instance with observer methods
+     * @return the subscription, which unregisters the observer methods when it is closed
+     * @throws IllegalArgumentException if the subscriber doesn't declare any observer method
+     */
+    public Subscription subscribeWeakly(Object subscriber) {
+        return registry.subscribe(Objects.requireNonNull(subscriber), true);
+    }
+
+    Subscription subscribe(Object subscriber, Method method, TypeLiteral<?> eventType) {
+        return registry.subscribe(subscriber, method, eventType);
+    }
+
+    /**
+     * Creates a reactive streams publisher of events of the given type published to this event bus. Each subscriber
+     * receives events published after it is subscribed, as it requests them, with a buffer of 256 events not yet
+     * requested, and the oldest event is dropped when the buffer is full. Subscribers are completed when the event bus
+     * is closed.
+     * @param eventType the class of events
+     * @param <E>       the type of events
+     * @return the new publisher
+     * @see #publisher(TypeLiteral, int, OverflowPolicy)
+     */
+    public <E> Flow.Publisher<E> publisher(Class<E> eventType) {
+        return publisher(TypeLiteral.get(eventType), 256, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates a reactive streams publisher of events of the given type published to this event bus, with a buffer of
+     * the given size per subscriber.
+     * @param eventType      the class of events
+     * @param bufferSize     the maximum number of events buffered for each subscriber, which are not yet requested
+     * @param overflowPolicy the policy applied when an event is published while the buffer of a subscriber is full
+     * @param <E>            the type of events
+     * @return the new publisher
+     * @throws IllegalArgumentException if the buffer size is not positive or the overflow policy is caller runs
+     * @see #publisher(TypeLiteral, int, OverflowPolicy)
+     */
+    public <E> Flow.Publisher<E> publisher(Class<E> eventType, int bufferSize, OverflowPolicy overflowPolicy) {
+        return publisher(TypeLiteral.get(eventType), bufferSize, overflowPolicy);
+    }
+
+    /**
+     * Creates a reactive streams publisher of events of the given generic type published to this event bus, which
+     * respects the demand of its subscribers. Each subscriber has its own buffer of events not yet requested, and
+     * when the buffer is full, the overflow policy is applied: the publishing thread waits for the subscriber to
+     * request events when it is {@link OverflowPolicy#BLOCK}, or the oldest or the newest event is dropped. Buffered
+     * events are emitted on the thread publishing an event or requesting events. A blocking subscriber must not
+     * request events only from the threads publishing events, as they wait for its requests.
+     * @param eventType      the generic type of events
+     * @param bufferSize     the maximum number of events buffered for each subscriber, which are not yet requested
+     * @param overflowPolicy the policy applied when an event is published while the buffer of a subscriber is full
+     * @param <E>            the type of events
+     * @return the new publisher
+     * @throws IllegalArgumentException if the buffer size is not positive or the overflow policy is caller runs
+     */
+    public <E> Flow.Publisher<E> publisher(TypeLiteral<E> eventType, int bufferSize, OverflowPolicy overflowPolicy) {
+        Objects.requireNonNull(eventType);
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("invalid buffer size: " + bufferSize);
+        } else if (Objects.requireNonNull(overflowPolicy) == OverflowPolicy.CALLER_RUNS) {
+            throw new IllegalArgumentException("The caller runs policy is not supported by publishers");
+        }
+        return new EventPublisher<>(this, eventType, bufferSize, overflowPolicy, flowSubscriptions);
+    }
+
+    /**
+     * Creates a reactive streams subscriber, which publishes items it receives to this event bus. It requests items
+     * from the upstream publisher in batches of 256, and requests more when half of them are published.
+     * @return the new subscriber
+     */
+    public Flow.Subscriber<Object> subscriber() {
+        return new EventSubscriber(this, 256);
+    }
+
+    /**
+     * Creates a channel to publish events of the given type, with the observers of this type resolved ahead of time.
+     * For publishers which send events of only one type, it avoids finding the type of each event and its observers
+     * in the registry. For ex:
+     * <pre>{@code
+     * EventChannel<OrderCreatedEvent> channel = eventBus.channel(OrderCreatedEvent.class);
+     * channel.publish(new OrderCreatedEvent(order));
+     * }</pre>
+     * @param eventType the class of events
+     * @param <E>       the type of events
+     * @return the new event channel
+     */
+    public <E> EventChannel<E> channel(Class<E> eventType) {
+        return new EventChannel<>(this, TypeLiteral.get(eventType));
+    }
+
+    /**
+     * Creates a channel to publish events of the given generic type, like {@code Event<List<Order>>}, with the
+     * observers of this exact type resolved ahead of time.
+     * @param eventType the generic type of events
+     * @param <E>       the type of events
+     * @return the new event channel
+     * @see #channel(Class)
+     */
+    public <E> EventChannel<E> channel(TypeLiteral<E> eventType) {
+        return new EventChannel<>(this, Objects.requireNonNull(eventType));
     }
 
     /**
@@ -71,29 +261,390 @@ public final class EventBus {
      */
     public void publish(Object event) {
         Objects.requireNonNull(event);
-        Iterator<Observer> eventObservers = registry.findObservers(event);
-        if (eventObservers.hasNext()) {
+        publishEvent(event, ObserverRegistry.getEventType(event));
+    }
+
+    /**
+     * Publish the event of the given generic type to all registered observers of this type. As type arguments of
+     * generic events are not available at runtime, this allows to publish events like {@code Event<List<Order>>} to
+     * observers of this exact type. The type literal can be created once and reused, for ex:
+     * <pre>{@code
+     * static final TypeLiteral<Event<List<Order>>> ORDERS_EVENT = new TypeLiteral<>() {};
+     * eventBus.publish(new Event<>(orders), ORDERS_EVENT);
+     * }</pre>
+     * @param event     event to post.
+     * @param eventType the generic type of the event
+     * @param <T>       the type of event
+     * @throws IllegalArgumentException if the event is not an instance of the raw event type
+     */
+    public <T> void publish(T event, TypeLiteral<? extends T> eventType) {
+        publishEvent(event, checkEventType(event, eventType));
+    }
+
+    /**
+     * Publish the event to all registered observers on the partition selected by the given key, so that events of
+     * the same key are delivered in the order they are published, and events of different keys are delivered in
+     * parallel on other partitions. For ex: to deliver all events of an account in order:
+     * <pre>{@code
+     * eventBus.publishOrdered(new BalanceChanged(account, amount), account.getId());
+     * }</pre>
+     * Events are recorded in the journal and forwarded by event bridges, but they are not coalesced, to keep them in
+     * order. Asynchronous observers of these events are invoked on their executors, without this ordering guarantee.
+     * @param event        event to post.
+     * @param partitionKey the key used to select the partition, like the id of an entity
+     * @throws IllegalStateException if partitions are not configured in the event bus module, or it is closed
+     */
+    public void publishOrdered(Object event, Object partitionKey) {
+        Objects.requireNonNull(event);
+        Objects.requireNonNull(partitionKey);
+        if (partitions == null) {
+            throw new IllegalStateException("The event bus partitions are not configured");
+        }
+        if (journal != null) {
+            journal.append(event);
+        }
+        for (EventBridge bridge : bridges) {
+            bridge.forward(event);
+        }
+        Observer[] eventObservers = findObservers(ObserverRegistry.getEventType(event));
+        if (eventObservers.length > 0) {
+            partitions.publish(event, partitionKey, eventObservers);
+        }
+    }
+
+    /**
+     * Publish the event with the given qualifier to observers of its type with this qualifier, like
+     * {@code @Observes void onOrder(@Named("orders") OrderEvent event)}, and to observers of its type without any
+     * qualifier. Observers with other qualifiers don't receive the event. The qualifier is not recorded in the
+     * journal or forwarded by event bridges, so the replayed and received events are delivered without qualifier.
+     * <pre>{@code
+     * eventBus.publish(new OrderEvent(order), Names.named("orders"));
+     * }</pre>
+     * @param event     event to post.
+     * @param qualifier the qualifier annotation of the event
+     */
+    public void publish(Object event, Annotation qualifier) {
+        Objects.requireNonNull(event);
+        publishEvent(event, ObserverRegistry.getEventType(event), Objects.requireNonNull(qualifier), null);
+    }
+
+    private void publishEvent(Object event, TypeLiteral<?> eventType) {
+        publishEvent(event, eventType, null, null);
+    }
+
+    /**
+     * Publishes the event through the journal and coalescing stages, and delivers it to the given observers, or to
+     * the observers of its type and qualifier if they are not resolved by the publisher.
+     */
+    void publishEvent(Object event, TypeLiteral<?> eventType, Annotation qualifier, Observer[] eventObservers) {
+        if (journal != null) {
+            journal.append(event);
+        }
+        for (EventBridge bridge : bridges) {
+            bridge.forward(event);
+        }
+        if (coalescer == null || !coalescer.offer(event, eventType, qualifier)) {
+            dispatchEvent(event, eventObservers != null ? eventObservers : findObservers(eventType, qualifier));
+        }
+    }
+
+    void routeEvent(Object event, TypeLiteral<?> eventType) {
+        dispatchEvent(event, findObservers(eventType));
+    }
+
+    void routeEvent(Object event, TypeLiteral<?> eventType, Annotation qualifier) {
+        dispatchEvent(event, findObservers(eventType, qualifier));
+    }
+
+    private void dispatchEvent(Object event, Observer[] eventObservers) {
+        if (eventObservers.length == 0) {
+            return;
+        }
+        if (ringBuffer != null) {
+            ringBuffer.publish(event, eventObservers);
+        } else {
             dispatcher.dispatch(event, eventObservers);
         }
     }
 
-    void invokeObserverMethod(Object event, Observer observer) {
-        try {
-            Object instance = injector.getInstance(observer.getBindingKey());
-            observer.getMethod().invoke(instance, event);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            if (e.getCause() instanceof RuntimeException) {
-                throw (RuntimeException) e.getCause();
+    /**
+     * Publish the event to all registered observers asynchronously, each on the executor of the observer or of the
+     * event bus, including the observers that are not marked as asynchronous.
+     * @param event event to post.
+     * @return a future that completes when all observers finish, or completes exceptionally if any of them fails
+     */
+    public CompletableFuture<Void> publishAsync(Object event) {
+        Objects.requireNonNull(event);
+        return publishEventAsync(event, findObservers(ObserverRegistry.getEventType(event)));
+    }
+
+    /**
+     * Publish the event of the given generic type to all registered observers of this type asynchronously.
+     * @param event     event to post.
+     * @param eventType the generic type of the event
+     * @param <T>       the type of event
+     * @return a future that completes when all observers finish, or completes exceptionally if any of them fails
+     * @throws IllegalArgumentException if the event is not an instance of the raw event type
+     * @see #publish(Object, TypeLiteral)
+     * @see #publishAsync(Object)
+     */
+    public <T> CompletableFuture<Void> publishAsync(T event, TypeLiteral<? extends T> eventType) {
+        return publishEventAsync(event, findObservers(checkEventType(event, eventType)));
+    }
+
+    /**
+     * Publish the event with the given qualifier to its observers asynchronously.
+     * @param event     event to post.
+     * @param qualifier the qualifier annotation of the event
+     * @return a future that completes when all observers finish, or completes exceptionally if any of them fails
+     * @see #publish(Object, Annotation)
+     * @see #publishAsync(Object)
+     */
+    public CompletableFuture<Void> publishAsync(Object event, Annotation qualifier) {
+        Objects.requireNonNull(event);
+        Objects.requireNonNull(qualifier);
+        return publishEventAsync(event, findObservers(ObserverRegistry.getEventType(event), qualifier));
+    }
+
+    CompletableFuture<Void> publishEventAsync(Object event, Observer[] eventObservers) {
+        if (journal != null) {
+            journal.append(event);
+        }
+        if (eventObservers.length == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[eventObservers.length];
+        for (int i = 0; i < eventObservers.length; i++) {
+            Observer observer = eventObservers[i];
+            if (!observer.accepts(event)) {
+                futures[i] = CompletableFuture.completedFuture(null);
+            } else if (observer.getBatch() != null) { // the event is delivered later with its batch
+                addToBatch(event, observer, observer.getBatch());
+                futures[i] = CompletableFuture.completedFuture(null);
             } else {
-                throw new RuntimeException(e.getCause() != null ? e.getCause() : e);
+                futures[i] = CompletableFuture.runAsync(() -> invokeObserverMethod(event, observer),
+                        observer.getExecutor(executor));
+            }
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    synchronized void addBridge(EventBridge bridge) {
+        EventBridge[] newBridges = Arrays.copyOf(bridges, bridges.length + 1);
+        newBridges[bridges.length] = bridge;
+        this.bridges = newBridges;
+    }
+
+    synchronized void removeBridge(EventBridge bridge) {
+        this.bridges = Arrays.stream(bridges).filter(b -> b != bridge).toArray(EventBridge[]::new);
+    }
+
+    /**
+     * Gets the modification count of observers of this event bus, which also includes modifications of observers of
+     * the parent event bus and its ancestors when it is configured.
+     */
+    long getModificationCount() {
+        return registry.getModificationCount();
+    }
+
+    Observer[] findObservers(TypeLiteral<?> eventType) {
+        return findObservers(eventType, null);
+    }
+
+    /**
+     * Finds observers of the given event type and qualifier, which includes observers of the parent event bus and
+     * its ancestors when it is configured. Merged observers are cached per event type and qualifier, and the cached
+     * array is valid until the shared modification count of registries in the hierarchy is changed.
+     */
+    Observer[] findObservers(TypeLiteral<?> eventType, Annotation qualifier) {
+        if (parent == null) {
+            return registry.findObservers(eventType, qualifier);
+        }
+        long modificationCount = registry.getModificationCount();
+        ConcurrentMap<TypeLiteral<?>, MergedObservers> mergedObserversMap = qualifier == null ? this.mergedObserversMap
+                : qualifiedMergedObserversMap.computeIfAbsent(qualifier, key -> new ConcurrentHashMap<>());
+        MergedObservers mergedObservers = mergedObserversMap.get(eventType);
+        if (mergedObservers == null || mergedObservers.modificationCount != modificationCount) {
+            Observer[] observers = registry.findObservers(eventType, qualifier);
+            Observer[] parentObservers = parent.findObservers(eventType, qualifier);
+            if (parentObservers.length > 0) {
+                Observer[] allObservers = Arrays.copyOf(observers, observers.length + parentObservers.length);
+                System.arraycopy(parentObservers, 0, allObservers, observers.length, parentObservers.length);
+                observers = allObservers;
+            }
+            mergedObservers = new MergedObservers(modificationCount, observers);
+            mergedObserversMap.put(eventType, mergedObservers);
+        }
+        return mergedObservers.observers;
+    }
+
+    private static TypeLiteral<?> checkEventType(Object event, TypeLiteral<?> eventType) {
+        Objects.requireNonNull(event);
+        if (!eventType.getRawType().isInstance(event)) {
+            throw new IllegalArgumentException("The event " + event + " is not an instance of " + eventType);
+        }
+        return eventType;
+    }
+
+    void deliverEvent(Object event, Observer observer) {
+        if (!observer.accepts(event)) {
+            return;
+        }
+        EventBatch batch = observer.getBatch();
+        if (batch != null) {
+            addToBatch(event, observer, batch);
+        } else {
+            invokeObserver(event, observer);
+        }
+    }
+
+    private void invokeObserver(Object event, Observer observer) {
+        if (observer.isAsync()) {
+            observer.getExecutor(executor).execute(() -> invokeObserverMethod(event, observer));
+        } else {
+            invokeObserverMethod(event, observer);
+        }
+    }
+
+    /**
+     * Adds the event to the batch of the observer, and delivers the batch when it is full. The first event added
+     * after a batch is delivered schedules the delivery of pending events after the maximum delay, on the scheduler
+     * thread, and a scheduled delivery is ignored if the batch is delivered before it because it is full.
+     */
+    private void addToBatch(Object event, Observer observer, EventBatch batch) {
+        List<Object> events = batch.add(event);
+        if (events != null) {
+            invokeObserver(events, observer);
+        }
+        long flushGeneration = batch.scheduleFlush();
+        if (flushGeneration >= 0) {
+            long delay = batch.getMaxDelayMillis();
+            getBatchScheduler().schedule(() -> flushBatch(observer, flushGeneration), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushBatch(Observer observer, long flushGeneration) {
+        List<Object> events = observer.getBatch().flush(flushGeneration);
+        if (events == null) {
+            return;
+        }
+        try {
+            invokeObserver(events, observer);
+        } catch (RuntimeException | Error e) { // report it like an exception thrown by asynchronous observers
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private ScheduledExecutorService getBatchScheduler() {
+        ScheduledExecutorService scheduler = batchScheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                if ((scheduler = batchScheduler) == null) {
+                    batchScheduler = scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "eventbus-batch");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
             }
         }
+        return scheduler;
+    }
+
+    void invokeObserverMethod(Object event, Observer observer) {
+        Object instance = observer.getInstance();
+        if (instance == null && observer.getBindingKey() == null) {
+            // the weakly held subscriber is garbage collected, which may be subscribed to a parent event bus
+            observer.getRegistry().removeCollectedSubscriber(observer);
+            return;
+        }
+        observer.invoke(instance, event);
+    }
+
+    /**
+     * Replays all events in the journal, by delivering them to the current observers as if they are published again,
+     * for ex: to rebuild derived state after a restart. Replayed events are not appended to the journal again, and
+     * they are not coalesced. Journal segments are read one at a time, without loading them in the heap.
+     * <p>
+     * Events published using any of the publish methods are journaled, but only the encoded event is recorded. So
+     * events are replayed synchronously with the type of their class, without the generic type or the qualifier they
+     * were published with: an event published as {@code Event<Order>} using a type literal is not delivered to
+     * observers of {@code Event<Order>}, and an event published with a qualifier is delivered only to observers
+     * without any qualifier.
+     * @return the number of events replayed
+     * @throws IllegalStateException if the journal is not configured or the event bus is closed
+     * @see EventBusModule#withJournal(java.nio.file.Path, EventCodec)
+     */
+    public long replayJournal() {
+        if (journal == null) {
+            throw new IllegalStateException("The event journal is not configured");
+        }
+        return journal.replay(event -> routeEvent(event, ObserverRegistry.getEventType(event)));
+    }
+
+    /**
+     * Returns the statistics of ring buffers used to deliver events, like the queue depth and the number of events
+     * dropped when the ring buffer was full. When partitions are configured, stats of each partition follow the stats
+     * of the ring buffer, in the order of partitions.
+     * @return a list of queue stats, which is empty if ring buffers are not used
+     */
+    public List<QueueStats> getQueueStats() {
+        if (partitions == null) {
+            return ringBuffer == null ? List.of() : List.of(ringBuffer.getStats());
+        }
+        List<QueueStats> statsList = new ArrayList<>();
+        if (ringBuffer != null) {
+            statsList.add(ringBuffer.getStats());
+        }
+        statsList.addAll(partitions.getStats());
+        return statsList;
     }
 
     /**
-     * Clear all observers from the cache.
+     * Clear all observers from the cache, and stop the virtual threads if they are used to deliver events. Pending
+     * coalesced events and batches are delivered before closing, subscribers of publishers are completed, and the
+     * journal is forced to the storage device. When the ring buffer or partitions are used, they stop accepting events
+     * and wait for the events in them to be delivered.
      */
     public void close() {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        if (ringBuffer != null) {
+            ringBuffer.close();
+        }
+        if (partitions != null) {
+            partitions.close();
+        }
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
+        for (Observer observer : registry.getBatchObservers()) {
+            List<Object> events = observer.getBatch().flush();
+            if (events != null) {
+                invokeObserver(events, observer);
+            }
+        }
+        for (EventPublisher.EventSubscription<?> flowSubscription : flowSubscriptions) {
+            flowSubscription.complete();
+        }
         registry.invalidateAll();
+        if (journal != null) {
+            journal.close();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static final class MergedObservers {
+        private final long modificationCount;
+        private final Observer[] observers;
+
+        MergedObservers(long modificationCount, Observer[] observers) {
+            this.modificationCount = modificationCount;
+            this.observers = observers;
+        }
     }
 }
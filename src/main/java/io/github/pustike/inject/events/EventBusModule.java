@@ -0,0 +1,432 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+import io.github.pustike.inject.bind.Binder;
+import io.github.pustike.inject.bind.Module;
+
+/**
+ * Module which binds the {@link EventBus} in {@link jakarta.inject.Singleton} scope. And adds a
+ * {@link io.github.pustike.inject.spi.BindingListener} which visits on all types to find and register methods
+ * annotated with {@link Observes}. Options of the event bus can be configured before the module is used to create
+ * the injector. For ex:
+ * <pre>{@code
+ * Injector injector = Injectors.create(new EventBusModule().withExecutor(executor), otherModules);
+ * }</pre>
+ */
+public final class EventBusModule implements Module {
+    private Executor executor;
+    private boolean virtualThreads;
+    private boolean eventHierarchy;
+    private boolean parentBus;
+    private ParallelFanOut parallelFanOut;
+    private int ringBufferCapacity;
+    private int consumerCount;
+    private WaitStrategy waitStrategy;
+    private OverflowPolicy overflowPolicy;
+    private int partitionCount;
+    private int partitionCapacity;
+    private WaitStrategy partitionWaitStrategy;
+    private OverflowPolicy partitionOverflowPolicy;
+    private final Map<Class<?>, EventCoalescer.Rule<?>> coalescingRules = new LinkedHashMap<>();
+    private Path journalDirectory;
+    private EventCodec journalCodec;
+    private int journalSegmentSize;
+    private int journalSyncBatchSize;
+    private boolean configured;
+
+    /**
+     * Creates the event bus module with default options.
+     */
+    public EventBusModule() {
+    }
+
+    /**
+     * Sets the executor used to deliver events to asynchronous observers, and to all observers when events are
+     * published using {@link EventBus#publishAsync(Object)}. The executor is not shut down when the event bus is
+     * closed. By default, the {@link ForkJoinPool#commonPool() common pool} is used.
+     * @param executor the executor to deliver events asynchronously
+     * @return this module
+     * @throws IllegalStateException if this module is already configured
+     */
+    public EventBusModule withExecutor(Executor executor) {
+        checkNotConfigured();
+        this.executor = Objects.requireNonNull(executor);
+        this.virtualThreads = false;
+        return this;
+    }
+
+    /**
+     * Delivers events to asynchronous observers and events published using {@link EventBus#publishAsync(Object)},
+     * each on its own virtual thread. Virtual threads are stopped when the event bus is closed.
+     * @return this module
+     * @throws IllegalStateException if this module is already configured
+     * @throws UnsupportedOperationException if virtual threads are not supported by the runtime
+     */
+    public EventBusModule withVirtualThreads() {
+        checkNotConfigured();
+        getVirtualThreadExecutorFactory();
+        this.executor = null;
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * Delivers events also to observers of their super-classes and interfaces, instead of only to observers of the
+     * exact event type. For ex: an observer of {@code Event<Order>} also receives events of sub-classes of
+     * {@code Event} with their source as a sub-class of {@code Order}, and an observer of {@code Object} receives all
+     * events.
+     * @return this module
+     * @throws IllegalStateException if this module is already configured
+     */
+    public EventBusModule withEventHierarchy() {
+        checkNotConfigured();
+        this.eventHierarchy = true;
+        return this;
+    }
+
+    /**
+     * Delivers events published in the event bus of a child injector also to observers of the event bus in its parent
+     * injector, and in all its ancestors, when this module is used to create the child injector. For ex:
+     * <pre>{@code
+     * Injector requestInjector = injector.createChildInjector(new EventBusModule().withParentBus(), requestModule);
+     * }</pre>
+     * Observers of the child are invoked first, followed by observers of the parent and its ancestors, nearest first.
+     * Observers of all event buses are merged into a cached array per event type, which is refreshed only when
+     * observers of any of them are changed. Events are delivered to all observers by the child event bus, using its
+     * own delivery mode, and events published in the parent are not delivered to observers of the child.
+     * @return this module
+     * @throws IllegalStateException if this module is already configured
+     */
+    public EventBusModule withParentBus() {
+        checkNotConfigured();
+        this.parentBus = true;
+        return this;
+    }
+
+    /**
+     * Delivers an event to its observers in parallel on the {@link ForkJoinPool#commonPool() common pool}, when it
+     * has at least the given number of observers, and waits until all of them are invoked before the event is
+     * delivered. It allows CPU-heavy observers of an event, like many indexers of a document, to use all cores.
+     * @param threshold the minimum number of observers of an event to deliver it in parallel
+     * @return this module
+     * @throws IllegalArgumentException if the threshold is less than 2
+     * @throws IllegalStateException if this module is already configured
+     * @see #withParallelFanOut(ForkJoinPool, int, Class[])
+     */
+    public EventBusModule withParallelFanOut(int threshold) {
+        return withParallelFanOut(ForkJoinPool.commonPool(), threshold);
+    }
+
+    /**
+     * Delivers an event of the given types to its observers in parallel on the pool, when it has at least the given
+     * number of observers, and waits until all of them are invoked before the event is delivered. Exceptions thrown
+     * by observers don't stop the event from being delivered to other observers, and after all observers are invoked,
+     * the first exception is thrown with others added to it as suppressed exceptions. Events published by observers
+     * on threads of the pool are dispatched on those threads, after the current observer is invoked.
+     * @param pool       the pool to invoke observers in parallel
+     * @param threshold  the minimum number of observers of an event to deliver it in parallel
+     * @param eventTypes the exact classes of events delivered in parallel, or none to deliver events of all types
+     * @return this module
+     * @throws IllegalArgumentException if the threshold is less than 2
+     * @throws IllegalStateException if this module is already configured
+     */
+    public EventBusModule withParallelFanOut(ForkJoinPool pool, int threshold, Class<?>... eventTypes) {
+        checkNotConfigured();
+        if (threshold < 2) {
+            throw new IllegalArgumentException("invalid parallel fan-out threshold: " + threshold);
+        }
+        this.parallelFanOut = new ParallelFanOut(Objects.requireNonNull(pool), threshold, Set.of(eventTypes));
+        return this;
+    }
+
+    /**
+     * Delivers events to observers on consumer threads, through a bounded ring buffer between publishing threads and
+     * consumer threads, instead of on the publishing thread. Events published on a single thread are delivered in the
+     * order they are published only when there is one consumer thread. Events published by observers on a consumer
+     * thread are delivered on that thread directly. Queue depth and drop counters of the ring buffer are available
+     * using {@link EventBus#getQueueStats()}, and consumer threads are stopped when the event bus is closed.
+     * @param capacity       the capacity of the ring buffer, which is rounded up to a power of two, and is at least
+     *                       two
+     * @param consumerCount  the number of consumer threads
+     * @param waitStrategy   the strategy used by consumers waiting for events and publishers waiting for space
+     * @param overflowPolicy the policy applied when an event is published while the ring buffer is full
+     * @return this module
+     * @throws IllegalArgumentException if the capacity or the number of consumer threads is not positive
+     * @throws IllegalStateException if this module is already configured
+     */
+    public EventBusModule withRingBuffer(int capacity, int consumerCount, WaitStrategy waitStrategy,
+            OverflowPolicy overflowPolicy) {
+        checkNotConfigured();
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid ring buffer capacity: " + capacity);
+        } else if (consumerCount <= 0) {
+            throw new IllegalArgumentException("invalid number of consumer threads: " + consumerCount);
+        }
+        // sequences of slots can't tell a full slot from an empty one with a single slot
+        this.ringBufferCapacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.consumerCount = consumerCount;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+        return this;
+    }
+
+    /**
+     * Delivers events published using {@link EventBus#publishOrdered(Object, Object)} on partitions, which are lanes
+     * with a bounded ring buffer drained by a single consumer thread each. The partition of an event is selected using
+     * the hash code of its partition key, so that events of the same key, like all events of an account, are delivered
+     * in the order they are published on a thread, while events of different keys are delivered in parallel. For ex:
+     * <pre>{@code
+     * new EventBusModule().withPartitions(Runtime.getRuntime().availableProcessors(), 1024,
+     *         WaitStrategy.BLOCKING, OverflowPolicy.BLOCK);
+     * }</pre>
+     * Queue depth of each partition is available using {@link EventBus#getQueueStats()}, and consumer threads are
+     * stopped when the event bus is closed. The order of events of a key is kept only by blocking the publisher when
+     * its partition is full: the drop policies are lossy per key, as events of a key are dropped while later events
+     * of the same key are delivered, and the caller runs policy is not supported, as delivering an event on the
+     * publishing thread would reorder it with the events of its key waiting in the partition.
+     * @param partitionCount the number of partitions, each with its own consumer thread
+     * @param capacity       the capacity of the ring buffer of each partition, which is rounded up to a power of two,
+     *                       and is at least two
+     * @param waitStrategy   the strategy used by consumers waiting for events and publishers waiting for space
+     * @param overflowPolicy the policy applied when an event is published while its partition is full
+     * @return this module
+     * @throws IllegalArgumentException if the number of partitions or the capacity is not positive, or the overflow
+     *                                  policy is caller runs
+     * @throws IllegalStateException if this module is already configured
+     */
+    public EventBusModule withPartitions(int partitionCount, int capacity, WaitStrategy waitStrategy,
+            OverflowPolicy overflowPolicy) {
+        checkNotConfigured();
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("invalid number of partitions: " + partitionCount);
+        } else if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid partition capacity: " + capacity);
+        } else if (Objects.requireNonNull(overflowPolicy) == OverflowPolicy.CALLER_RUNS) {
+            throw new IllegalArgumentException("The caller runs policy is not supported by partitions");
+        }
+        this.partitionCount = partitionCount;
+        // sequences of slots can't tell a full slot from an empty one with a single slot
+        this.partitionCapacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.partitionWaitStrategy = Objects.requireNonNull(waitStrategy);
+        this.partitionOverflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Coalesces events of the given type, which are published within the window with the same coalescing key, into
+     * the latest of these events, which is delivered when the window ends. For ex: to deliver the last of many config
+     * changed events of each config name, at most once in every 100 milliseconds:
+     * <pre>{@code
+     * new EventBusModule().withCoalescing(ConfigChanged.class, ConfigChanged::getName, Duration.ofMillis(100));
+     * }</pre>
+     * Events are matched using their exact class, and the window starts when the first event of a key is published.
+     * Events published using {@link EventBus#publishAsync(Object)} are not coalesced.
+     * @param eventType   the class of events to coalesce
+     * @param keyFunction the function which returns the non-null coalescing key of an event
+     * @param window      the duration in which events of a key are coalesced
+     * @param <E>         the type of event
+     * @return this module
+     * @throws IllegalArgumentException if the window is not positive, or events of this type are already coalesced
+     * @throws IllegalStateException if this module is already configured
+     */
+    public <E> EventBusModule withCoalescing(Class<E> eventType, Function<? super E, ?> keyFunction,
+            Duration window) {
+        return addCoalescingRule(eventType, keyFunction, window, null);
+    }
+
+    /**
+     * Coalesces events of the given type, which are published within the window with the same coalescing key, into
+     * an event reduced from them using the given function, which is delivered when the window ends. For ex: to merge
+     * cache invalidation events of each cache region:
+     * <pre>{@code
+     * new EventBusModule().withCoalescing(CacheInvalidated.class, CacheInvalidated::getRegion,
+     *         Duration.ofMillis(50), CacheInvalidated::merge);
+     * }</pre>
+     * @param eventType   the class of events to coalesce
+     * @param keyFunction the function which returns the non-null coalescing key of an event
+     * @param window      the duration in which events of a key are coalesced
+     * @param reducer     the function to reduce the pending event and a new event into the event to be delivered
+     * @param <E>         the type of event
+     * @return this module
+     * @throws IllegalArgumentException if the window is not positive, or events of this type are already coalesced
+     * @throws IllegalStateException if this module is already configured
+     * @see #withCoalescing(Class, Function, Duration)
+     */
+    public <E> EventBusModule withCoalescing(Class<E> eventType, Function<? super E, ?> keyFunction,
+            Duration window, BinaryOperator<E> reducer) {
+        return addCoalescingRule(eventType, keyFunction, window, Objects.requireNonNull(reducer));
+    }
+
+    private <E> EventBusModule addCoalescingRule(Class<E> eventType, Function<? super E, ?> keyFunction,
+            Duration window, BinaryOperator<E> reducer) {
+        checkNotConfigured();
+        Objects.requireNonNull(eventType);
+        Objects.requireNonNull(keyFunction);
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("invalid coalescing window: " + window);
+        } else if (coalescingRules.containsKey(eventType)) {
+            throw new IllegalArgumentException("Events are already coalesced for the type: " + eventType);
+        }
+        long windowNanos = window.compareTo(Duration.ofNanos(Long.MAX_VALUE)) < 0 ? window.toNanos() : Long.MAX_VALUE;
+        coalescingRules.put(eventType, new EventCoalescer.Rule<>(eventType, keyFunction, windowNanos, reducer));
+        return this;
+    }
+
+    /**
+     * Appends events published using {@link EventBus#publish(Object)}, {@link EventBus#publishAsync(Object)} and
+     * their variants to a journal of memory-mapped segment files in the given directory, before they are delivered,
+     * so that they can be replayed using {@link EventBus#replayJournal()}, for ex: to rebuild derived state after a
+     * restart. Events are journaled only if they are encoded by the codec. Segments of 64 MB are used and they are
+     * forced to the storage device after every 100 events.
+     * @param directory the directory of journal segments
+     * @param codec     the codec to encode and decode events
+     * @return this module
+     * @throws IllegalStateException if this module is already configured
+     * @see #withJournal(Path, EventCodec, int, int)
+     */
+    public EventBusModule withJournal(Path directory, EventCodec codec) {
+        return withJournal(directory, codec, 64 << 20, 100);
+    }
+
+    /**
+     * Appends events published using {@link EventBus#publish(Object)}, {@link EventBus#publishAsync(Object)} and
+     * their variants to a journal of memory-mapped segment files in the given directory, before they are delivered,
+     * so that they can be replayed using {@link EventBus#replayJournal()}. Events are journaled only if they are
+     * encoded by the codec.
+     * @param directory     the directory of journal segments
+     * @param codec         the codec to encode and decode events
+     * @param segmentSize   the size of each segment file in bytes, larger than 64, which limits the size of an
+     *                      encoded event
+     * @param syncBatchSize the number of events appended before the segment is forced to the storage device
+     * @return this module
+     * @throws IllegalArgumentException if the segment size is not larger than 64 bytes, or the sync batch size is not
+     *                                  positive
+     * @throws IllegalStateException if this module is already configured
+     */
+    public EventBusModule withJournal(Path directory, EventCodec codec, int segmentSize, int syncBatchSize) {
+        checkNotConfigured();
+        if (segmentSize <= 64) {
+            throw new IllegalArgumentException("invalid journal segment size: " + segmentSize);
+        } else if (syncBatchSize <= 0) {
+            throw new IllegalArgumentException("invalid journal sync batch size: " + syncBatchSize);
+        }
+        this.journalDirectory = Objects.requireNonNull(directory);
+        this.journalCodec = Objects.requireNonNull(codec);
+        this.journalSegmentSize = segmentSize;
+        this.journalSyncBatchSize = syncBatchSize;
+        return this;
+    }
+
+    @Override
+    public void configure(Binder binder) {
+        checkNotConfigured();
+        this.configured = true;
+        binder.bind(EventBus.class).asLazySingleton();
+        binder.bind(EventBusModule.class).toInstance(this);
+        ObserverRegistry registry = new ObserverRegistry(eventHierarchy);
+        binder.bind(ObserverRegistry.class).toInstance(registry);
+        binder.addBindingListener(targetClass -> true, registry::register);
+    }
+
+    /**
+     * Creates the executor owned by the event bus, which is shut down when it is closed, or returns {@code null}
+     * when virtual threads are not used.
+     */
+    ExecutorService createOwnedExecutor() {
+        if (!virtualThreads) {
+            return null;
+        }
+        try {
+            return (ExecutorService) getVirtualThreadExecutorFactory().invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("couldn't create the virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Creates the ring buffer dispatcher of the event bus, or returns {@code null} when it is not used.
+     */
+    RingBufferDispatcher createRingBuffer(EventBus eventBus, Dispatcher dispatcher) {
+        return ringBufferCapacity == 0 ? null : new RingBufferDispatcher("eventbus", eventBus, dispatcher,
+                ringBufferCapacity, consumerCount, waitStrategy, overflowPolicy);
+    }
+
+    /**
+     * Creates the partitioned dispatcher of the event bus, or returns {@code null} when it is not used.
+     */
+    PartitionedDispatcher createPartitions(EventBus eventBus, Dispatcher dispatcher) {
+        return partitionCount == 0 ? null : new PartitionedDispatcher("eventbus", eventBus, dispatcher,
+                partitionCount, partitionCapacity, partitionWaitStrategy, partitionOverflowPolicy);
+    }
+
+    /**
+     * Creates the coalescer of events published to the event bus, or returns {@code null} when it is not used.
+     */
+    EventCoalescer createCoalescer(EventBus eventBus) {
+        return coalescingRules.isEmpty() ? null : new EventCoalescer("eventbus", eventBus, coalescingRules);
+    }
+
+    /**
+     * Opens the journal of events published to the event bus, or returns {@code null} when it is not used.
+     */
+    EventJournal createJournal() {
+        return journalDirectory == null ? null
+                : new EventJournal(journalDirectory, journalCodec, journalSegmentSize, journalSyncBatchSize);
+    }
+
+    ParallelFanOut getParallelFanOut() {
+        return parallelFanOut;
+    }
+
+    boolean isParentBus() {
+        return parentBus;
+    }
+
+    Executor getExecutor() {
+        return executor != null ? executor : ForkJoinPool.commonPool();
+    }
+
+    private void checkNotConfigured() {
+        if (configured) {
+            throw new IllegalStateException("The event bus module is already configured");
+        }
+    }
+
+    private static Method getVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this runtime: "
+                    + Runtime.version());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import io.github.pustike.inject.TypeLiteral;
+
+/**
+ * Channel to publish events of a single type to the {@link EventBus}, created using {@link EventBus#channel(Class)}.
+ * Observers of the channel's event type are resolved when the first event is published and cached, so that
+ * publishing an event doesn't find its type and observers in the registry. The cached observers are refreshed when
+ * observers of the event bus are changed, for ex: when an instance is subscribed, which is checked using a single
+ * modification count. Events are delivered to observers of the exact type of the channel, like they are published
+ * using {@link EventBus#publish(Object, TypeLiteral)}.
+ * @param <E> the type of events
+ */
+public final class EventChannel<E> {
+    private final EventBus eventBus;
+    private final TypeLiteral<E> eventType;
+    private volatile Routing routing;
+
+    EventChannel(EventBus eventBus, TypeLiteral<E> eventType) {
+        this.eventBus = eventBus;
+        this.eventType = eventType;
+        this.routing = new Routing(-1, null);
+    }
+
+    /**
+     * Gets the type of events published using this channel.
+     * @return the event type
+     */
+    public TypeLiteral<E> getEventType() {
+        return eventType;
+    }
+
+    /**
+     * Publish the event to all observers of the channel's event type.
+     * @param event event to post.
+     */
+    public void publish(E event) {
+        Objects.requireNonNull(event);
+        eventBus.publishEvent(event, eventType, null, getObservers());
+    }
+
+    /**
+     * Publish the event to all observers of the channel's event type asynchronously.
+     * @param event event to post.
+     * @return a future that completes when all observers finish, or completes exceptionally if any of them fails
+     * @see EventBus#publishAsync(Object)
+     */
+    public CompletableFuture<Void> publishAsync(E event) {
+        Objects.requireNonNull(event);
+        return eventBus.publishEventAsync(event, getObservers());
+    }
+
+    private Observer[] getObservers() {
+        Routing routing = this.routing;
+        long modificationCount = eventBus.getModificationCount();
+        if (routing.modificationCount != modificationCount) {
+            // the count is read before finding observers, so that a concurrent change is found on the next event
+            this.routing = routing = new Routing(modificationCount, eventBus.findObservers(eventType));
+        }
+        return routing.observers;
+    }
+
+    private static final class Routing {
+        private final long modificationCount;
+        private final Observer[] observers;
+
+        Routing(long modificationCount, Observer[] observers) {
+            this.modificationCount = modificationCount;
+            this.observers = observers;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+import io.github.pustike.inject.TypeLiteral;
+
+/**
+ * Coalesces events of the configured types, which are published within a window with the same coalescing key, into
+ * a single event that is delivered when the window ends. The first event of a key in each window schedules the
+ * delivery on a single scheduler thread, and further events of this key are merged into the pending event, by
+ * keeping the latest event or by reducing them, without scheduling any other task.
+ */
+final class EventCoalescer {
+    private final EventBus eventBus;
+    private final Map<Class<?>, Rule<?>> rules;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private volatile boolean running;
+
+    EventCoalescer(String name, EventBus eventBus, Map<Class<?>, Rule<?>> rules) {
+        this.eventBus = eventBus;
+        this.rules = Map.copyOf(rules);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, name + "-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.running = true;
+    }
+
+    /**
+     * Adds the event to the pending event of its coalescing key, if its type is configured to be coalesced. Events
+     * published with a qualifier are coalesced separately from events of the same key with other qualifiers.
+     * @return {@code true} if the event is coalesced, or {@code false} if it should be delivered directly
+     */
+    boolean offer(Object event, TypeLiteral<?> eventType, Annotation qualifier) {
+        Rule<?> rule = rules.get(event.getClass());
+        if (rule == null) {
+            return false;
+        } else if (!running) {
+            throw new IllegalStateException("The event bus is closed");
+        }
+        Object eventKey = rule.getKey(event);
+        Object key = qualifier == null ? eventKey : List.of(eventKey, qualifier);
+        PendingEvent pendingEvent = rule.pendingEvents.compute(key, (k, pending) -> pending == null
+                ? new PendingEvent(event, eventType, qualifier, false) : pending.merge(rule, event, eventType));
+        if (!pendingEvent.scheduled) { // only the first event in the window schedules its delivery
+            scheduler.schedule(() -> flush(rule, key), rule.windowNanos, TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    private void flush(Rule<?> rule, Object key) {
+        PendingEvent pendingEvent = rule.pendingEvents.remove(key);
+        if (pendingEvent != null) {
+            eventBus.routeEvent(pendingEvent.event, pendingEvent.eventType, pendingEvent.qualifier);
+        }
+    }
+
+    /**
+     * Stops the scheduler and delivers all pending events on the calling thread.
+     */
+    void close() {
+        running = false;
+        scheduler.shutdownNow();
+        for (Rule<?> rule : rules.values()) {
+            for (Object key : rule.pendingEvents.keySet()) {
+                flush(rule, key);
+            }
+        }
+    }
+
+    /**
+     * Coalescing rule of an event type, with the pending events of each coalescing key.
+     * @param <E> the type of event
+     */
+    static final class Rule<E> {
+        private final Class<E> eventClass;
+        private final Function<? super E, ?> keyFunction;
+        private final long windowNanos;
+        private final BinaryOperator<E> reducer;
+        private final ConcurrentMap<Object, PendingEvent> pendingEvents;
+
+        Rule(Class<E> eventClass, Function<? super E, ?> keyFunction, long windowNanos, BinaryOperator<E> reducer) {
+            this.eventClass = eventClass;
+            this.keyFunction = keyFunction;
+            this.windowNanos = windowNanos;
+            this.reducer = reducer;
+            this.pendingEvents = new ConcurrentHashMap<>();
+        }
+
+        Object getKey(Object event) {
+            return Objects.requireNonNull(keyFunction.apply(eventClass.cast(event)), "coalescing key");
+        }
+
+        Object reduce(Object previous, Object event) {
+            if (reducer == null) { // keep the latest event
+                return event;
+            }
+            return Objects.requireNonNull(reducer.apply(eventClass.cast(previous), eventClass.cast(event)));
+        }
+    }
+
+    private static final class PendingEvent {
+        private final Object event;
+        private final TypeLiteral<?> eventType;
+        private final Annotation qualifier;
+        private final boolean scheduled;
+
+        PendingEvent(Object event, TypeLiteral<?> eventType, Annotation qualifier, boolean scheduled) {
+            this.event = event;
+            this.eventType = eventType;
+            this.qualifier = qualifier;
+            this.scheduled = scheduled;
+        }
+
+        PendingEvent merge(Rule<?> rule, Object newEvent, TypeLiteral<?> newEventType) {
+            return new PendingEvent(rule.reduce(event, newEvent), newEventType, qualifier, true);
+        }
+    }
+}
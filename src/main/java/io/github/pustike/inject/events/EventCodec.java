@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec to encode events appended to the event journal, and to decode them when the journal is replayed. For ex:
+ * <pre>{@code
+ * EventCodec codec = new EventCodec() {
+ *     public byte[] encode(Object event) {
+ *         return event instanceof OrderCreated ? ((OrderCreated) event).toBytes() : null;
+ *     }
+ *
+ *     public Object decode(ByteBuffer buffer) {
+ *         return OrderCreated.fromBytes(buffer);
+ *     }
+ * };
+ * }</pre>
+ * @see EventBusModule#withJournal(java.nio.file.Path, EventCodec)
+ */
+public interface EventCodec {
+    /**
+     * Encodes the event to be appended to the journal.
+     * @param event the published event
+     * @return the encoded bytes of the event, or {@code null} if the event should not be journaled
+     */
+    byte[] encode(Object event);
+
+    /**
+     * Decodes an event from the bytes returned by {@link #encode(Object)}. The buffer is a read-only view of the
+     * memory-mapped journal, which is valid only during this call.
+     * @param buffer the buffer with the encoded bytes of the event, from its position to the limit
+     * @return the decoded event
+     */
+    Object decode(ByteBuffer buffer);
+}
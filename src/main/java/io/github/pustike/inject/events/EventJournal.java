@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal of events appended to segmented memory-mapped files, using a pluggable {@link EventCodec}. Each segment
+ * is a file of fixed size, which starts with a header (magic number and version), followed by records of events. A
+ * record contains its length including the record header, the CRC32C checksum of the encoded event and the encoded
+ * event. The remaining space in a segment is zero, so that the end of records is found when the journal is opened
+ * again, after the last record which is complete and valid. The header of a new segment is forced to the storage
+ * device before events are appended to it, and a last segment with a zero header, which is created when the process
+ * crashed before writing it, is opened as an empty segment.
+ * <p>
+ * Segments are forced to the storage device after the configured number of records are appended, and when the
+ * journal is closed. Replaying the journal maps one segment at a time, so that segments are streamed to observers
+ * without loading them in the heap.
+ */
+final class EventJournal {
+    private static final int MAGIC = 0x50454A4E; // PEJN
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private final Path directory;
+    private final EventCodec codec;
+    private final int segmentSize;
+    private final int syncBatchSize;
+    private final List<Path> segments;
+    private MappedByteBuffer segmentBuffer;
+    private int unsyncedCount;
+    private boolean closed;
+
+    EventJournal(Path directory, EventCodec codec, int segmentSize, int syncBatchSize) {
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.syncBatchSize = syncBatchSize;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                this.segments = files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted().collect(Collectors.toCollection(ArrayList::new));
+            }
+            if (segments.isEmpty()) {
+                createSegment();
+            } else {
+                Path lastSegment = segments.get(segments.size() - 1);
+                this.segmentBuffer = mapSegment(lastSegment, FileChannel.MapMode.READ_WRITE);
+                if (segmentBuffer.getLong(0) == 0) { // the header of the new segment was not written
+                    writeHeader(segmentBuffer);
+                }
+                segmentBuffer.position(findEndOfRecords(lastSegment, segmentBuffer));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("error when opening the event journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends the event to the journal, if the codec encodes it.
+     */
+    synchronized void append(Object event) {
+        byte[] encodedEvent = codec.encode(event);
+        if (encodedEvent == null) {
+            return;
+        } else if (closed) {
+            throw new IllegalStateException("The event journal is closed");
+        }
+        int recordLength = RECORD_HEADER_SIZE + encodedEvent.length;
+        if (recordLength > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new IllegalArgumentException("The encoded event is larger than the journal segment: " + event);
+        }
+        try {
+            if (segmentBuffer.remaining() < recordLength) {
+                segmentBuffer.force();
+                unsyncedCount = 0;
+                createSegment();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("error when creating a segment of the event journal in " + directory, e);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(encodedEvent);
+        int position = segmentBuffer.position();
+        // the length is written last, so that an incomplete record is never read
+        segmentBuffer.position(position + 4);
+        segmentBuffer.putInt((int) checksum.getValue());
+        segmentBuffer.put(encodedEvent);
+        segmentBuffer.putInt(position, recordLength);
+        if (++unsyncedCount >= syncBatchSize) {
+            segmentBuffer.force();
+            unsyncedCount = 0;
+        }
+    }
+
+    /**
+     * Replays all events appended before this method is called, by decoding them from segments in order and passing
+     * them to the given consumer. Events appended while replaying, for ex: by observers, are not replayed.
+     * @return the number of events replayed
+     */
+    long replay(Consumer<Object> eventConsumer) {
+        List<Path> replayedSegments;
+        int endPosition;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The event journal is closed");
+            }
+            replayedSegments = List.copyOf(segments);
+            endPosition = segmentBuffer.position();
+        }
+        long count = 0;
+        for (int i = 0, lastIndex = replayedSegments.size() - 1; i <= lastIndex; i++) {
+            Path segment = replayedSegments.get(i);
+            ByteBuffer buffer;
+            try {
+                buffer = mapSegment(segment, FileChannel.MapMode.READ_ONLY);
+            } catch (IOException e) {
+                throw new RuntimeException("error when reading the event journal segment " + segment, e);
+            }
+            int limit = i == lastIndex ? endPosition : findEndOfRecords(segment, buffer);
+            for (int position = SEGMENT_HEADER_SIZE; position < limit; ) {
+                int recordLength = buffer.getInt(position);
+                ByteBuffer encodedEvent = buffer.duplicate().position(position + RECORD_HEADER_SIZE)
+                        .limit(position + recordLength).slice().asReadOnlyBuffer();
+                eventConsumer.accept(codec.decode(encodedEvent));
+                position += recordLength;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Forces appended events to the storage device and closes the journal.
+     */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            segmentBuffer.force();
+        }
+    }
+
+    private void createSegment() throws IOException {
+        long sequence = segments.isEmpty() ? 0 : parseSequence(segments.get(segments.size() - 1)) + 1;
+        Path segment = directory.resolve(String.format("%020d", sequence) + SEGMENT_SUFFIX);
+        MappedByteBuffer buffer = mapSegment(segment, FileChannel.MapMode.READ_WRITE);
+        writeHeader(buffer);
+        buffer.position(SEGMENT_HEADER_SIZE);
+        segments.add(segment);
+        this.segmentBuffer = buffer;
+    }
+
+    private static void writeHeader(MappedByteBuffer buffer) {
+        buffer.putInt(0, MAGIC).putInt(4, VERSION);
+        buffer.force();
+    }
+
+    private MappedByteBuffer mapSegment(Path segment, FileChannel.MapMode mapMode) throws IOException {
+        boolean readOnly = mapMode == FileChannel.MapMode.READ_ONLY;
+        try (FileChannel channel = readOnly ? FileChannel.open(segment, StandardOpenOption.READ)
+                : FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(mapMode, 0, readOnly ? channel.size() : Math.max(channel.size(), segmentSize));
+        }
+    }
+
+    /**
+     * Finds the position after the last record in the segment, which is complete and has a valid checksum.
+     */
+    private static int findEndOfRecords(Path segment, ByteBuffer buffer) {
+        if (buffer.limit() < SEGMENT_HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Invalid event journal segment: " + segment);
+        }
+        CRC32C checksum = new CRC32C();
+        int position = SEGMENT_HEADER_SIZE;
+        while (position <= buffer.limit() - RECORD_HEADER_SIZE) {
+            int recordLength = buffer.getInt(position);
+            if (recordLength < RECORD_HEADER_SIZE || recordLength > buffer.limit() - position) {
+                break;
+            }
+            checksum.reset();
+            checksum.update(buffer.duplicate().position(position + RECORD_HEADER_SIZE).limit(position + recordLength));
+            if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += recordLength;
+        }
+        return position;
+    }
+
+    private static long parseSequence(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+}
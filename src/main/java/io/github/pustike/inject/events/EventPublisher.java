@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.pustike.inject.TypeLiteral;
+
+/**
+ * Publisher of events of a type published to the {@link EventBus}, to subscribers of reactive streams. Each
+ * subscriber observes events using its own subscription to the event bus, with a bounded buffer of events which are
+ * not yet requested by the subscriber, and the overflow policy is applied when the buffer is full. Buffered events
+ * are emitted to the subscriber when it requests them, on the thread publishing an event or requesting events, and
+ * the subscriber is completed when the event bus is closed.
+ * @param <E> the type of events
+ */
+final class EventPublisher<E> implements Flow.Publisher<E> {
+    private static final Method OBSERVER_METHOD;
+    private final EventBus eventBus;
+    private final TypeLiteral<E> eventType;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Set<EventSubscription<?>> activeSubscriptions;
+
+    static {
+        try {
+            OBSERVER_METHOD = EventSubscription.class.getDeclaredMethod("onEvent", Object.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    EventPublisher(EventBus eventBus, TypeLiteral<E> eventType, int bufferSize, OverflowPolicy overflowPolicy,
+            Set<EventSubscription<?>> activeSubscriptions) {
+        this.eventBus = eventBus;
+        this.eventType = eventType;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.activeSubscriptions = activeSubscriptions;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super E> subscriber) {
+        Objects.requireNonNull(subscriber);
+        EventSubscription<E> subscription = new EventSubscription<>(subscriber, bufferSize, overflowPolicy,
+                activeSubscriptions);
+        subscription.observerSubscription = eventBus.subscribe(subscription, OBSERVER_METHOD, eventType);
+        activeSubscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Subscription of a reactive streams subscriber, which observes events on the event bus and emits them to the
+     * subscriber based on its demand. Emitting is serialized using a work-in-progress counter, so that the thread
+     * which finds other threads emitting only notifies them to check for more events. Terminal signals, like the
+     * error of an invalid request, are emitted by the same loop, so that they are never concurrent with onNext.
+     */
+    static final class EventSubscription<E> implements Flow.Subscription {
+        private final Flow.Subscriber<? super E> subscriber;
+        private final int bufferSize;
+        private final OverflowPolicy overflowPolicy;
+        private final ArrayDeque<Object> buffer;
+        private final ReentrantLock lock;
+        private final Condition notFull;
+        private final AtomicLong requested;
+        private final AtomicInteger workInProgress;
+        private final Set<EventSubscription<?>> activeSubscriptions;
+        private volatile Subscription observerSubscription;
+        private volatile boolean cancelled, completed;
+        private volatile Throwable error;
+        private boolean terminated; // accessed only while emitting
+
+        EventSubscription(Flow.Subscriber<? super E> subscriber, int bufferSize, OverflowPolicy overflowPolicy,
+                Set<EventSubscription<?>> activeSubscriptions) {
+            this.subscriber = subscriber;
+            this.bufferSize = bufferSize;
+            this.overflowPolicy = overflowPolicy;
+            this.buffer = new ArrayDeque<>(Math.min(bufferSize, 256));
+            this.lock = new ReentrantLock();
+            this.notFull = lock.newCondition();
+            this.requested = new AtomicLong();
+            this.workInProgress = new AtomicInteger();
+            this.activeSubscriptions = activeSubscriptions;
+        }
+
+        @Observes
+        void onEvent(Object event) {
+            if (cancelled || completed) {
+                return;
+            }
+            lock.lock();
+            try {
+                while (buffer.size() >= bufferSize && overflowPolicy == OverflowPolicy.BLOCK && !cancelled
+                        && !completed) {
+                    lock.unlock(); // the subscriber may request events on this thread
+                    try {
+                        emit();
+                    } finally {
+                        lock.lock();
+                    }
+                    if (buffer.size() >= bufferSize && !cancelled && !completed) {
+                        notFull.awaitUninterruptibly();
+                    }
+                }
+                if (buffer.size() < bufferSize) {
+                    buffer.offer(event);
+                } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    buffer.poll();
+                    buffer.offer(event);
+                } // else DROP_NEWEST, or the subscription is cancelled or completed
+            } finally {
+                lock.unlock();
+            }
+            emit();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (error == null) {
+                    error = new IllegalArgumentException("non-positive subscription request: " + n);
+                }
+                emit();
+                return;
+            }
+            requested.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            emit();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            activeSubscriptions.remove(this);
+            Subscription observerSubscription = this.observerSubscription;
+            if (observerSubscription != null) {
+                observerSubscription.close();
+            }
+            signalNotFull();
+        }
+
+        /**
+         * Completes the subscriber after emitting the buffered events, when the event bus is closed.
+         */
+        void complete() {
+            completed = true;
+            activeSubscriptions.remove(this);
+            signalNotFull(); // publishers blocked on the full buffer drop their events
+            emit();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void emit() {
+            if (workInProgress.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (error != null && !cancelled && !terminated) {
+                    terminated = true;
+                    cancel();
+                    subscriber.onError(error);
+                }
+                long requestedCount = requested.get(), emittedCount = 0;
+                while (emittedCount != requestedCount && !cancelled) {
+                    Object event = poll();
+                    if (event == null) {
+                        break;
+                    }
+                    boolean delivered = false;
+                    try {
+                        subscriber.onNext((E) event);
+                        delivered = true;
+                    } finally {
+                        if (!delivered) { // the work-in-progress counter is left as is, as nothing is emitted
+                            cancel();
+                        }
+                    }
+                    emittedCount++;
+                }
+                if (emittedCount != 0 && requestedCount != Long.MAX_VALUE) {
+                    requested.addAndGet(-emittedCount);
+                }
+                if (completed && !cancelled && !terminated && isEmpty()) {
+                    terminated = true;
+                    subscriber.onComplete();
+                }
+                missed = workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private Object poll() {
+            lock.lock();
+            try {
+                Object event = buffer.poll();
+                if (event != null) {
+                    notFull.signal();
+                }
+                return event;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isEmpty() {
+            lock.lock();
+            try {
+                return buffer.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void signalNotFull() {
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+
+/**
+ * Subscriber of reactive streams, which publishes items it receives to the {@link EventBus}. It requests items in
+ * batches, and requests the next batch when half of the current batch is published, so that the upstream publisher
+ * doesn't emit more items than the event bus has consumed. If an item can't be published, for ex: when the event bus
+ * is closed, the upstream subscription is cancelled and the exception is reported to the uncaught exception handler,
+ * as a subscriber must return normally from {@code onNext}.
+ */
+final class EventSubscriber implements Flow.Subscriber<Object> {
+    private final EventBus eventBus;
+    private final int batchSize;
+    private Flow.Subscription subscription;
+    private int receivedCount;
+
+    EventSubscriber(EventBus eventBus, int batchSize) {
+        this.eventBus = eventBus;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (this.subscription != null) { // a subscriber can't be subscribed more than once
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public void onNext(Object item) {
+        Flow.Subscription subscription = this.subscription;
+        if (subscription == null) { // items emitted before the cancellation reached the publisher are ignored
+            return;
+        }
+        try {
+            eventBus.publish(item);
+        } catch (RuntimeException | Error e) {
+            this.subscription = null;
+            subscription.cancel();
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            return;
+        }
+        int replenishCount = Math.max(1, batchSize / 2);
+        if (++receivedCount == replenishCount) {
+            receivedCount = 0;
+            subscription.request(replenishCount);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        subscription = null;
+    }
+
+    @Override
+    public void onComplete() {
+        subscription = null;
+    }
+}
@@ -15,28 +15,141 @@
  */
 package io.github.pustike.inject.events;
 
-import java.lang.reflect.InaccessibleObjectException;
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import jakarta.inject.Provider;
 
 import io.github.pustike.inject.BindingKey;
+import io.github.pustike.inject.TypeLiteral;
 
+/**
+ * Observer of a binding or of an instance subscribed at runtime, which delivers events to its observer method. The
+ * metadata of the method is shared by all observers of the method, so that an observer only holds its binding key or
+ * subscriber, the batch of events accumulated for it and the provider and executor resolved after the first event.
+ */
 final class Observer {
+    // the registry this observer belongs to, which may be the registry of a parent event bus
+    private final ObserverRegistry registry;
     private final BindingKey<?> bindingKey;
-    private final Method method;
+    // the instance subscribed at runtime or a weak reference to it, which is null for observers of bindings
+    private final Object subscriber;
+    private final ObserverMethod observerMethod;
+    private final TypeLiteral<?> eventType;
+    private final EventBatch batch;
+    private volatile Executor executor;
+    private volatile Provider<?> provider;
+
+    Observer(ObserverRegistry registry, BindingKey<?> bindingKey, Object subscriber, ObserverMethod observerMethod) {
+        this(registry, bindingKey, subscriber, observerMethod, observerMethod.getEventType());
+    }
 
-    Observer(BindingKey<?> bindingKey, Method method) {
+    /**
+     * Creates the observer of the given event type, which is used instead of the type observed by the method.
+     */
+    Observer(ObserverRegistry registry, BindingKey<?> bindingKey, Object subscriber, ObserverMethod observerMethod,
+            TypeLiteral<?> eventType) {
+        this.registry = registry;
         this.bindingKey = bindingKey;
-        this.method = method;
-        if (!method.trySetAccessible()) {
-            throw new InaccessibleObjectException("couldn't enable access to observer method: " + method);
-        }
+        this.subscriber = subscriber;
+        this.observerMethod = observerMethod;
+        this.eventType = eventType;
+        this.batch = observerMethod.createBatch();
     }
 
     BindingKey<?> getBindingKey() {
         return bindingKey;
     }
 
+    /**
+     * Gets the registry this observer belongs to, which is the registry of a parent event bus for observers merged
+     * into a child event bus.
+     */
+    ObserverRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Gets the instance subscribed at runtime or the weak reference to it, which is {@code null} for observers of
+     * bindings.
+     */
+    Object getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * Gets the instance to invoke the observer method on, from the scoped provider of its binding. The provider is
+     * looked up from the injector of the event bus this observer belongs to, when the first event is delivered, as
+     * observers are registered while the injector is being configured, and it is reused for all further events. So
+     * that a child event bus delivering events to observers of its parent doesn't use a binding of the same key in
+     * the child injector. For an instance subscribed at runtime, it returns the subscriber, or {@code null} if it is
+     * weakly held and is garbage collected.
+     */
+    Object getInstance() {
+        if (bindingKey == null) {
+            return subscriber instanceof Reference ? ((Reference<?>) subscriber).get() : subscriber;
+        }
+        Provider<?> provider = this.provider;
+        if (provider == null) {
+            this.provider = provider = registry.getInjector().getProvider(bindingKey);
+        }
+        return provider.get();
+    }
+
+    TypeLiteral<?> getEventType() {
+        return eventType;
+    }
+
+    /**
+     * Gets the qualifier of events observed by this observer, or {@code null} if it observes events without qualifier.
+     */
+    Annotation getQualifier() {
+        return observerMethod.getQualifier();
+    }
+
+    /**
+     * Gets the batch of events accumulated for this observer, or {@code null} if it is not a batch observer.
+     */
+    EventBatch getBatch() {
+        return batch;
+    }
+
     Method getMethod() {
-        return method;
+        return observerMethod.getMethod();
+    }
+
+    /**
+     * Invokes the observer method on the given instance with the event. Checked exceptions thrown by the observer
+     * method are wrapped in a runtime exception.
+     */
+    void invoke(Object instance, Object event) {
+        observerMethod.invoke(instance, event);
+    }
+
+    boolean isAsync() {
+        return observerMethod.isAsync();
+    }
+
+    /**
+     * Tests whether the event matches the source types and the filter of this observer. It is evaluated before the
+     * observer instance is looked up, so that events ignored by the observer don't create or look up its instance.
+     */
+    boolean accepts(Object event) {
+        return observerMethod.accepts(event);
+    }
+
+    /**
+     * Gets the executor to deliver events to this observer asynchronously, which is either the named executor looked
+     * up from the injector of the event bus this observer belongs to, or the given default executor of the event bus
+     * delivering the event.
+     */
+    Executor getExecutor(Executor defaultExecutor) {
+        BindingKey<Executor> executorKey = observerMethod.getExecutorKey();
+        if (executorKey == null) {
+            return defaultExecutor;
+        }
+        Executor executor = this.executor;
+        return executor == null ? this.executor = registry.getInjector().getInstance(executorKey) : executor;
     }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import jakarta.inject.Qualifier;
+
+import io.github.pustike.inject.BindingKey;
+import io.github.pustike.inject.TypeLiteral;
+
+/**
+ * Metadata of an observer method, like the observed event type and qualifier, the batch settings, and the invoker and
+ * filter generated using {@link LambdaMetafactory}. It is created once per method and cached with its declaring
+ * class, so that observers of all bindings and subscribers of a class share it, and subscribing an instance at
+ * runtime doesn't scan its class or generate any class again.
+ */
+final class ObserverMethod {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType FILTER_TYPE = MethodType.methodType(boolean.class, Object.class);
+    private static final Class<?>[] NO_SOURCE_TYPES = new Class<?>[0];
+    private final Method method;
+    private final TypeLiteral<?> eventType;
+    private final Annotation qualifier;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final BiConsumer<Object, Object> invoker;
+    private final Class<?>[] sourceTypes;
+    private final Predicate<Object> filter;
+    private final boolean async;
+    private final BindingKey<Executor> executorKey;
+
+    ObserverMethod(Method method) {
+        this.method = method;
+        Observes observes = method.getAnnotation(Observes.class);
+        if (observes.batchSize() < 0 || observes.maxDelayMs() < 0) {
+            String message = "Method %s has @Observes annotation with negative batchSize or maxDelayMs.";
+            throw new IllegalArgumentException(String.format(message, method));
+        }
+        this.batchSize = observes.batchSize();
+        this.maxDelayMillis = observes.maxDelayMs();
+        this.eventType = getObservedType(method, batchSize > 0);
+        this.qualifier = getQualifier(method);
+        String executorName = observes.executor();
+        this.executorKey = executorName.isEmpty() ? null : BindingKey.of(Executor.class, executorName);
+        this.async = observes.async() || executorKey != null;
+        if (!method.trySetAccessible()) {
+            throw new InaccessibleObjectException("couldn't enable access to observer method: " + method);
+        }
+        this.invoker = createInvoker(method);
+        this.sourceTypes = observes.sourceType().length == 0 ? NO_SOURCE_TYPES : observes.sourceType().clone();
+        this.filter = observes.filter().isEmpty() ? null
+                : createFilter(method, eventType.getRawType(), observes.filter());
+    }
+
+    /**
+     * Gets the qualifier annotation of the observer method's parameter, like {@code @Named("orders")}.
+     */
+    private static Annotation getQualifier(Method method) {
+        for (Annotation annotation : method.getParameterAnnotations()[0]) {
+            if (annotation.annotationType().isAnnotationPresent(Qualifier.class)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the type of events observed by the given method, which is the exact generic type of its parameter, or the
+     * type argument of its {@code List<E>} parameter for a batch observer.
+     */
+    private static TypeLiteral<?> getObservedType(Method method, boolean batchObserver) {
+        Type parameterType = method.getGenericParameterTypes()[0];
+        if (!batchObserver) {
+            return TypeLiteral.get(parameterType);
+        }
+        if (method.getParameterTypes()[0] != List.class || !(parameterType instanceof ParameterizedType)) {
+            String message = "Method %s has @Observes annotation with batchSize, but its parameter is not a List<E>.";
+            throw new IllegalArgumentException(String.format(message, method));
+        }
+        return TypeLiteral.get(((ParameterizedType) parameterType).getActualTypeArguments()[0]);
+    }
+
+    /**
+     * Creates the invoker of the observer method, which is a lambda generated using {@link LambdaMetafactory}, so
+     * that it is invoked directly like any other method call. If the lambda can not be generated, for ex: when the
+     * package of observer class is not open to this module, it falls back to invoke the method handle.
+     */
+    private static BiConsumer<Object, Object> createInvoker(Method method) {
+        if (!Modifier.isStatic(method.getModifiers())) {
+            MethodType instantiatedType = MethodType.methodType(void.class, method.getDeclaringClass(),
+                    method.getParameterTypes()[0]);
+            BiConsumer<Object, Object> invoker = generateLambda(method, BiConsumer.class, "accept", INVOKER_TYPE,
+                    instantiatedType);
+            if (invoker != null) {
+                return invoker;
+            }
+        }
+        MethodHandle methodHandle = unreflect(method);
+        if (Modifier.isStatic(method.getModifiers())) {
+            methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+        }
+        MethodHandle invoker = methodHandle.asType(INVOKER_TYPE);
+        return (instance, event) -> {
+            try {
+                invoker.invokeExact(instance, event);
+            } catch (Throwable e) {
+                throw ObserverMethod.<RuntimeException>rethrow(e);
+            }
+        };
+    }
+
+    /**
+     * Creates the filter using the static predicate method with the given name, declared in the observer class. The
+     * predicate method must accept the event observed by the observer method and return a {@code boolean}.
+     */
+    private static Predicate<Object> createFilter(Method method, Class<?> eventType, String filterName) {
+        Method filterMethod = null;
+        for (Method declaredMethod : method.getDeclaringClass().getDeclaredMethods()) {
+            if (declaredMethod.getName().equals(filterName) && Modifier.isStatic(declaredMethod.getModifiers())
+                    && declaredMethod.getReturnType() == boolean.class && declaredMethod.getParameterCount() == 1
+                    && declaredMethod.getParameterTypes()[0].isAssignableFrom(eventType)) {
+                filterMethod = declaredMethod;
+                break;
+            }
+        }
+        if (filterMethod == null) {
+            String message = "Method %s has @Observes annotation with filter '%s', but a static boolean method with"
+                    + " this name accepting the event is not declared in the observer class.";
+            throw new IllegalArgumentException(String.format(message, method, filterName));
+        } else if (!filterMethod.trySetAccessible()) {
+            throw new InaccessibleObjectException("couldn't enable access to observer filter: " + filterMethod);
+        }
+        Predicate<Object> filter = generateLambda(filterMethod, Predicate.class, "test", FILTER_TYPE,
+                MethodType.methodType(boolean.class, filterMethod.getParameterTypes()[0]));
+        if (filter != null) {
+            return filter;
+        }
+        MethodHandle predicate = unreflect(filterMethod).asType(FILTER_TYPE);
+        return event -> {
+            try {
+                return (boolean) predicate.invokeExact(event);
+            } catch (Throwable e) {
+                throw ObserverMethod.<RuntimeException>rethrow(e);
+            }
+        };
+    }
+
+    /**
+     * Generates a lambda of the functional interface implemented by the given method, using a private lookup in its
+     * declaring class, or returns {@code null} if it can not be generated.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T generateLambda(Method method, Class<? super T> interfaceType, String interfaceMethod,
+            MethodType interfaceMethodType, MethodType instantiatedMethodType) {
+        try {
+            Class<?> declaringClass = method.getDeclaringClass();
+            ObserverMethod.class.getModule().addReads(declaringClass.getModule());
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, interfaceMethod,
+                    MethodType.methodType(interfaceType), interfaceMethodType, lookup.unreflect(method),
+                    instantiatedMethodType);
+            return (T) callSite.getTarget().invoke();
+        } catch (Throwable e) {
+            return null; // fall back to the method handle
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new InaccessibleObjectException("couldn't enable access to observer method: " + method);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> E rethrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the type of events observed by this method, which is the exact generic type of its parameter, or the type
+     * argument of its {@code List<E>} parameter for a batch observer.
+     */
+    TypeLiteral<?> getEventType() {
+        return eventType;
+    }
+
+    Annotation getQualifier() {
+        return qualifier;
+    }
+
+    /**
+     * Creates the batch to accumulate events for an observer of this method, or returns {@code null} if it is not a
+     * batch observer.
+     */
+    EventBatch createBatch() {
+        return batchSize > 0 ? new EventBatch(batchSize, maxDelayMillis) : null;
+    }
+
+    boolean isAsync() {
+        return async;
+    }
+
+    BindingKey<Executor> getExecutorKey() {
+        return executorKey;
+    }
+
+    /**
+     * Invokes the observer method on the given instance with the event. Checked exceptions thrown by the observer
+     * method are wrapped in a runtime exception.
+     */
+    void invoke(Object instance, Object event) {
+        try {
+            invoker.accept(instance, event);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Tests whether the event matches the source types and the filter of this observer. It is evaluated before the
+     * observer instance is looked up, so that events ignored by the observer don't create or look up its instance.
+     */
+    boolean accepts(Object event) {
+        if (sourceTypes.length > 0 && !isSourceTypeMatching(event)) {
+            return false;
+        }
+        return filter == null || filter.test(event);
+    }
+
+    private boolean isSourceTypeMatching(Object event) {
+        if (event instanceof EventObject) {
+            Object source = ((EventObject) event).getSource();
+            for (Class<?> sourceType : sourceTypes) {
+                if (sourceType.isInstance(source)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -15,34 +15,106 @@
  */
 package io.github.pustike.inject.events;
 
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.github.pustike.inject.BindingKey;
+import io.github.pustike.inject.Injector;
+import io.github.pustike.inject.TypeLiteral;
 import io.github.pustike.inject.utils.ReflectionUtils;
 
+/**
+ * Registry of observers, indexed by the exact type of events they observe. Observers of each event type are stored
+ * in an array, which is copied when an observer is registered, so that observers can be found without any locking,
+ * while events are published from many threads.
+ * <p>
+ * When the event type hierarchy is enabled, observers of all super-types of an event also receive it. Observers of
+ * all super-types are flattened into an array per event type, when the first event of that type is published, so
+ * that observers are found using a single lookup however deep the type hierarchy is.
+ * <p>
+ * Observers with a qualifier annotation on their parameter, like {@code @Named("orders")}, are indexed separately
+ * by their event type and qualifier, and they receive only events published with this qualifier. Events published
+ * with a qualifier are also delivered to observers without any qualifier, and observers of each qualified event type
+ * are merged into a cached array, when the first event of that type and qualifier is published.
+ * <p>
+ * Instances subscribed at runtime are registered in the same way, and they are removed by copying the array without
+ * their observers. Observers of weakly held subscribers are removed when the subscriber is garbage collected.
+ */
 final class ObserverRegistry {
-    private final Map<Integer, List<Observer>> eventObserversMap;
+    private static final Observer[] NO_OBSERVERS = new Observer[0];
+    // observer methods are scanned and their invokers are generated only once per class
+    private static final ClassValue<ObserverMethod[]> observerMethods = new ClassValue<>() {
+        @Override
+        protected ObserverMethod[] computeValue(Class<?> targetClass) {
+            return findObserverMethods(targetClass);
+        }
+    };
+    private static final ClassValue<ParameterizedEventTypes> parameterizedEventTypes = new ClassValue<>() {
+        @Override
+        protected ParameterizedEventTypes computeValue(Class<?> eventClass) {
+            // event classes without exactly one type parameter, like OrderCreatedEvent, are not parameterized
+            return eventClass.getTypeParameters().length == 1 ? new ParameterizedEventTypes(eventClass) : null;
+        }
+    };
+    private final ConcurrentMap<TypeLiteral<?>, Observer[]> eventObserversMap;
+    private final ConcurrentMap<BindingKey<?>, Observer[]> qualifiedObserversMap;
+    private final boolean eventHierarchy;
+    // replaced when an observer is registered, so that a stale array computed concurrently is not cached
+    private volatile ConcurrentMap<TypeLiteral<?>, Observer[]> flattenedObserversMap;
+    // merged observers of qualified events, keyed by the qualifier and the event type, so that no key is allocated
+    private volatile ConcurrentMap<Annotation, ConcurrentMap<TypeLiteral<?>, Observer[]>> mergedQualifiedObserversMap;
+    private final ReferenceQueue<Object> collectedSubscribers;
+    private volatile Injector injector;
+    // incremented when observers are changed, which is shared with registries of child event buses
+    private volatile AtomicLong modificationCount;
+
+    ObserverRegistry(boolean eventHierarchy) {
+        this.eventObserversMap = new ConcurrentHashMap<>();
+        this.qualifiedObserversMap = new ConcurrentHashMap<>();
+        this.eventHierarchy = eventHierarchy;
+        this.flattenedObserversMap = new ConcurrentHashMap<>();
+        this.mergedQualifiedObserversMap = new ConcurrentHashMap<>();
+        this.collectedSubscribers = new ReferenceQueue<>();
+        this.modificationCount = new AtomicLong();
+    }
+
+    /**
+     * Sets the injector of the event bus using this registry, which is used by its observers to look up their
+     * instances and named executors.
+     */
+    void setInjector(Injector injector) {
+        this.injector = injector;
+    }
 
-    ObserverRegistry() {
-        eventObserversMap = new HashMap<>();
+    Injector getInjector() {
+        return injector;
     }
 
     /**
      * Find all methods in the given class and all its super-classes, that are annotated with {@code @Observes}.
      * @param targetClass the target listener class
-     * @return a list of observer methods
+     * @return an array of observer methods, which is empty if the class doesn't declare any observer method
      */
-    private static Iterable<Method> findObserverMethods(Class<?> targetClass) {
-        Map<Integer, Method> observerMethods = new HashMap<>();
+    private static ObserverMethod[] findObserverMethods(Class<?> targetClass) {
+        Map<List<Object>, Method> observerMethods = new LinkedHashMap<>();
         for (Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
             for (Method method : ReflectionUtils.getDeclaredMethods(clazz)) {
                 if (method.isAnnotationPresent(Observes.class) && !method.isSynthetic()) {
@@ -52,50 +124,319 @@ final class ObserverRegistry {
                                 + " EventHandler methods must have exactly 1 parameter.";
                         throw new IllegalArgumentException(String.format(message, method, parameterTypes.length));
                     }
-                    int hashCode = Objects.hash(method.getName(), parameterTypes);
-                    if (!observerMethods.containsKey(hashCode)) {
-                        observerMethods.put(hashCode, method);
+                    // methods overridden in sub-classes are not registered again
+                    observerMethods.putIfAbsent(List.of(method.getName(), parameterTypes[0]), method);
+                }
+            }
+        }
+        return observerMethods.values().stream().map(ObserverMethod::new).toArray(ObserverMethod[]::new);
+    }
+
+    /**
+     * Gets the type of the given event. The type of a generic {@link Event} is parameterized with its source type,
+     * for ex: {@code Event<Order>}, and the type of any other event is its class. Parameterized types are cached per
+     * event class and source type, so that publishing an event doesn't allocate its type.
+     */
+    static TypeLiteral<?> getEventType(Object eventObject) {
+        Class<?> eventClass = eventObject.getClass();
+        if (eventObject instanceof Event) {
+            ParameterizedEventTypes eventTypes = parameterizedEventTypes.get(eventClass);
+            if (eventTypes != null) {
+                return eventTypes.getEventType(((Event<?>) eventObject).getSourceType());
+            }
+        }
+        return TypeLiteral.get(eventClass);
+    }
+
+    void register(BindingKey<?> bindingKey, Class<?> targetClass) {
+        ObserverMethod[] methods = observerMethods.get(targetClass);
+        if (methods.length > 0) {
+            Observer[] observers = new Observer[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                observers[i] = new Observer(this, bindingKey, null, methods[i]);
+            }
+            addObservers(observers);
+        }
+    }
+
+    /**
+     * Subscribes the given instance, by registering all its methods annotated with {@code @Observes}.
+     * @param subscriber the subscriber instance
+     * @param weak       if the subscriber should be held using a weak reference
+     * @return the subscription to unregister the observers
+     * @throws IllegalArgumentException if the subscriber doesn't declare any observer method
+     */
+    Subscription subscribe(Object subscriber, boolean weak) {
+        removeCollectedSubscribers();
+        ObserverMethod[] methods = observerMethods.get(subscriber.getClass());
+        if (methods.length == 0) {
+            throw new IllegalArgumentException("No method annotated with @Observes is found in " + subscriber);
+        }
+        SubscriberReference reference = weak ? new SubscriberReference(subscriber, collectedSubscribers) : null;
+        Observer[] observers = new Observer[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            observers[i] = new Observer(this, null, reference != null ? reference : subscriber, methods[i]);
+        }
+        Subscription subscription = new Subscription(this, observers);
+        if (reference != null) {
+            reference.subscription = subscription;
+        }
+        addObservers(observers);
+        return subscription;
+    }
+
+    /**
+     * Subscribes the given observer method of the instance to receive events of the given type, which is used by
+     * adapters observing events of a type known only at runtime.
+     * @param subscriber the subscriber instance
+     * @param method     the observer method, which accepts events of the given type
+     * @param eventType  the type of events
+     * @return the subscription to unregister the observer
+     */
+    Subscription subscribe(Object subscriber, Method method, TypeLiteral<?> eventType) {
+        ObserverMethod observerMethod = null;
+        for (ObserverMethod candidate : observerMethods.get(subscriber.getClass())) {
+            if (candidate.getMethod().equals(method)) {
+                observerMethod = candidate;
+            }
+        }
+        if (observerMethod == null) {
+            throw new IllegalArgumentException("Method " + method + " is not an observer method of " + subscriber);
+        }
+        Observer[] observers = {new Observer(this, null, subscriber, observerMethod, eventType)};
+        Subscription subscription = new Subscription(this, observers);
+        addObservers(observers);
+        return subscription;
+    }
+
+    private void addObservers(Observer[] observers) {
+        for (Observer observer : observers) {
+            if (observer.getQualifier() == null) {
+                addObserver(eventObserversMap, observer.getEventType(), observer);
+            } else {
+                addObserver(qualifiedObserversMap, getQualifiedKey(observer), observer);
+            }
+        }
+        onObserversModified();
+    }
+
+    private static <K> void addObserver(ConcurrentMap<K, Observer[]> observersMap, K key, Observer observer) {
+        observersMap.merge(key, new Observer[]{observer}, (registered, added) -> {
+            Observer[] newObservers = Arrays.copyOf(registered, registered.length + 1);
+            newObservers[registered.length] = observer;
+            return newObservers;
+        });
+    }
+
+    /**
+     * Unregisters the given observers, by copying the arrays of observers of their event types without them.
+     * @param observers the observers to unregister
+     */
+    void unregister(Observer... observers) {
+        for (Observer observer : observers) {
+            if (observer.getQualifier() == null) {
+                removeObserver(eventObserversMap, observer.getEventType(), observer);
+            } else {
+                removeObserver(qualifiedObserversMap, getQualifiedKey(observer), observer);
+            }
+        }
+        onObserversModified();
+    }
+
+    private static <K> void removeObserver(ConcurrentMap<K, Observer[]> observersMap, K key, Observer observer) {
+        observersMap.computeIfPresent(key, (eventType, registered) -> {
+            for (int i = 0; i < registered.length; i++) {
+                if (registered[i] == observer) {
+                    if (registered.length == 1) {
+                        return null;
                     }
+                    Observer[] newObservers = Arrays.copyOf(registered, registered.length - 1);
+                    System.arraycopy(registered, i + 1, newObservers, i, registered.length - i - 1);
+                    return newObservers;
                 }
             }
+            return registered;
+        });
+    }
+
+    private static BindingKey<?> getQualifiedKey(Observer observer) {
+        return BindingKey.of(observer.getEventType(), observer.getQualifier());
+    }
+
+    private void onObserversModified() {
+        if (eventHierarchy) {
+            flattenedObserversMap = new ConcurrentHashMap<>();
         }
-        return Collections.unmodifiableCollection(observerMethods.values());
+        mergedQualifiedObserversMap = new ConcurrentHashMap<>();
+        modificationCount.incrementAndGet();
     }
 
-    private static int computeParameterHashCode(Method method) {
-        Class<?> parameterClass = method.getParameterTypes()[0];
-        Type parameterType = method.getGenericParameterTypes()[0];
-        if (parameterType instanceof ParameterizedType) {
-            ParameterizedType firstParam = (ParameterizedType) parameterType;
-            Type[] typeArguments = firstParam.getActualTypeArguments();
-            return Objects.hash(firstParam.getRawType().getTypeName(), typeArguments[0].getTypeName());
+    /**
+     * Unregisters the observer of a weakly held subscriber, which is garbage collected while an event is delivered to
+     * it, by closing its subscription.
+     * @param observer the observer of the collected subscriber
+     */
+    void removeCollectedSubscriber(Observer observer) {
+        Object subscriber = observer.getSubscriber();
+        Subscription subscription = subscriber instanceof SubscriberReference
+                ? ((SubscriberReference) subscriber).subscription : null;
+        if (subscription != null) {
+            subscription.close();
+        } else {
+            unregister(observer);
         }
-        return parameterClass.getName().hashCode();
     }
 
-    private static int computeEventHashCode(Object eventObject) {
-        Class<?> eventClass = eventObject.getClass();
-        if (eventObject instanceof Event) {
-            return Objects.hash(eventClass.getName(), ((Event<?>) eventObject).getSourceType().getName());
-        }// REVIEW: doesn't support complex generic events!
-        return eventClass.getName().hashCode();
+    /**
+     * Unregisters observers of the weakly held subscribers that are garbage collected.
+     */
+    void removeCollectedSubscribers() {
+        for (Reference<?> reference; (reference = collectedSubscribers.poll()) != null; ) {
+            Subscription subscription = ((SubscriberReference) reference).subscription;
+            if (subscription != null) {
+                subscription.close();
+            }
+        }
     }
 
-    void register(BindingKey<?> bindingKey, Class<?> targetClass) {
-        Iterable<Method> observerMethods = findObserverMethods(targetClass);
-        for (Method method : observerMethods) {
-            int eventHashCode = computeParameterHashCode(method);
-            List<Observer> observerList = eventObserversMap.computeIfAbsent(eventHashCode, k -> new ArrayList<>());
-            observerList.add(new Observer(bindingKey, method));
+    /**
+     * Finds observers of the given event type, and also of its super-types when the event type hierarchy is enabled.
+     * @param eventType the type of event
+     * @return an array of observers, which must not be modified
+     */
+    Observer[] findObservers(TypeLiteral<?> eventType) {
+        if (!eventHierarchy) {
+            Observer[] observers = eventObserversMap.get(eventType);
+            return observers == null ? NO_OBSERVERS : observers;
         }
+        ConcurrentMap<TypeLiteral<?>, Observer[]> flattenedObserversMap = this.flattenedObserversMap;
+        Observer[] observers = flattenedObserversMap.get(eventType);
+        if (observers == null) {
+            observers = flattenObservers(eventType);
+            flattenedObserversMap.putIfAbsent(eventType, observers);
+        }
+        return observers;
     }
 
-    // REVIEW: should it support event hierarchy?
-    Iterator<Observer> findObservers(Object eventObject) {
-        int eventHashCode = computeEventHashCode(eventObject);
-        List<Observer> observers = eventObserversMap.get(eventHashCode);
-        return observers == null ? Collections.emptyIterator()
-                : Collections.unmodifiableCollection(observers).iterator();
+    /**
+     * Finds observers of the given event type and qualifier, which are the observers with this qualifier and the
+     * observers of the event type without any qualifier. When the event type hierarchy is enabled, observers of all
+     * super-types of the event with this qualifier are also included.
+     * @param eventType the type of event
+     * @param qualifier the qualifier annotation of the event, or {@code null} to find observers without qualifier
+     * @return an array of observers, which must not be modified
+     */
+    Observer[] findObservers(TypeLiteral<?> eventType, Annotation qualifier) {
+        if (qualifier == null) {
+            return findObservers(eventType);
+        }
+        ConcurrentMap<Annotation, ConcurrentMap<TypeLiteral<?>, Observer[]>> mergedQualifiedObserversMap
+                = this.mergedQualifiedObserversMap;
+        ConcurrentMap<TypeLiteral<?>, Observer[]> mergedObserversMap = mergedQualifiedObserversMap.get(qualifier);
+        if (mergedObserversMap == null) {
+            mergedObserversMap = mergedQualifiedObserversMap.computeIfAbsent(qualifier,
+                    key -> new ConcurrentHashMap<>());
+        }
+        Observer[] observers = mergedObserversMap.get(eventType);
+        if (observers == null) {
+            List<Observer> observerList = new ArrayList<>();
+            if (eventHierarchy) {
+                for (TypeLiteral<?> type : getEventTypeHierarchy(eventType)) {
+                    addAll(observerList, qualifiedObserversMap.get(BindingKey.of(type, qualifier)));
+                }
+            } else {
+                addAll(observerList, qualifiedObserversMap.get(BindingKey.of(eventType, qualifier)));
+            }
+            addAll(observerList, findObservers(eventType));
+            observers = observerList.isEmpty() ? NO_OBSERVERS : observerList.toArray(NO_OBSERVERS);
+            mergedObserversMap.putIfAbsent(eventType, observers);
+        }
+        return observers;
+    }
+
+    private Observer[] flattenObservers(TypeLiteral<?> eventType) {
+        List<Observer> observerList = new ArrayList<>();
+        for (TypeLiteral<?> type : getEventTypeHierarchy(eventType)) {
+            addAll(observerList, eventObserversMap.get(type));
+        }
+        return observerList.isEmpty() ? NO_OBSERVERS : observerList.toArray(NO_OBSERVERS);
+    }
+
+    private static void addAll(List<Observer> observerList, Observer[] observers) {
+        if (observers != null) {
+            observerList.addAll(Arrays.asList(observers));
+        }
+    }
+
+    /**
+     * Gets the given event type and all its super-types, nearest first. For an {@code Event<Order>}, it includes the
+     * event parameterized with all super-types of {@code Order}, followed by all super-types of the event class.
+     */
+    private static Set<TypeLiteral<?>> getEventTypeHierarchy(TypeLiteral<?> eventType) {
+        Set<TypeLiteral<?>> typeHierarchy = new LinkedHashSet<>();
+        typeHierarchy.add(eventType);
+        Class<?> eventClass = eventType.getRawType();
+        if (!eventType.isRawType() && eventType.getTypeArgumentCount() == 1) {
+            for (TypeLiteral<?> sourceType : getTypeHierarchy(eventType.getTypeArgument(0).getRawType())) {
+                typeHierarchy.add(TypeLiteral.getParameterized(eventClass, sourceType.getType()));
+            }
+        }
+        typeHierarchy.addAll(getTypeHierarchy(eventClass));
+        return typeHierarchy;
+    }
+
+    /**
+     * Gets the given class and all its super-classes and interfaces, including their generic forms, in breadth-first
+     * order. So that for ex: a sub-class of {@code Event<Order>} is also observed as {@code Event<Order>}.
+     */
+    private static Set<TypeLiteral<?>> getTypeHierarchy(Class<?> clazz) {
+        Set<TypeLiteral<?>> typeHierarchy = new LinkedHashSet<>();
+        Set<Class<?>> visitedClasses = new HashSet<>();
+        Queue<Class<?>> classQueue = new ArrayDeque<>();
+        classQueue.offer(clazz);
+        visitedClasses.add(clazz);
+        for (Class<?> current; (current = classQueue.poll()) != null; ) {
+            typeHierarchy.add(TypeLiteral.get(current));
+            List<Type> superTypes = new ArrayList<>(Arrays.asList(current.getGenericInterfaces()));
+            if (current.getGenericSuperclass() != null) {
+                superTypes.add(0, current.getGenericSuperclass());
+            }
+            for (Type superType : superTypes) {
+                Class<?> superClass;
+                if (superType instanceof ParameterizedType) {
+                    typeHierarchy.add(TypeLiteral.get(superType));
+                    superClass = (Class<?>) ((ParameterizedType) superType).getRawType();
+                } else {
+                    superClass = (Class<?>) superType;
+                }
+                if (visitedClasses.add(superClass)) {
+                    classQueue.offer(superClass);
+                }
+            }
+        }
+        return typeHierarchy;
+    }
+
+    /**
+     * Gets all registered batch observers, to deliver their pending events when the event bus is closed.
+     */
+    List<Observer> getBatchObservers() {
+        List<Observer> batchObservers = new ArrayList<>();
+        for (Observer[] observers : eventObserversMap.values()) {
+            for (Observer observer : observers) {
+                if (observer.getBatch() != null) {
+                    batchObservers.add(observer);
+                }
+            }
+        }
+        for (Observer[] observers : qualifiedObserversMap.values()) {
+            for (Observer observer : observers) {
+                if (observer.getBatch() != null) {
+                    batchObservers.add(observer);
+                }
+            }
+        }
+        return batchObservers;
     }
 
     /**
@@ -103,5 +444,57 @@ final class ObserverRegistry {
      */
     void invalidateAll() {
         eventObserversMap.clear();
+        qualifiedObserversMap.clear();
+        flattenedObserversMap = new ConcurrentHashMap<>();
+        mergedQualifiedObserversMap = new ConcurrentHashMap<>();
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of modifications to observers of this registry and of registries sharing the count with it.
+     */
+    long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Shares the modification count of the given registry of the parent event bus, so that modifications to
+     * observers in the parent or any of its ancestors are known from a single count.
+     */
+    void shareModificationCount(ObserverRegistry parentRegistry) {
+        this.modificationCount = parentRegistry.modificationCount;
+    }
+
+    /**
+     * Parameterized types of a generic event class, like {@code Event<Order>}, keyed by their source type.
+     */
+    private static final class ParameterizedEventTypes {
+        private final Class<?> eventClass;
+        private final ConcurrentMap<Class<?>, TypeLiteral<?>> eventTypes;
+
+        ParameterizedEventTypes(Class<?> eventClass) {
+            this.eventClass = eventClass;
+            this.eventTypes = new ConcurrentHashMap<>();
+        }
+
+        TypeLiteral<?> getEventType(Class<?> sourceType) {
+            TypeLiteral<?> eventType = eventTypes.get(sourceType);
+            if (eventType == null) {
+                eventType = eventTypes.computeIfAbsent(sourceType,
+                        type -> TypeLiteral.getParameterized(eventClass, type));
+            }
+            return eventType;
+        }
+    }
+
+    /**
+     * Weak reference to a subscriber, which is enqueued when it is garbage collected, to close its subscription.
+     */
+    private static final class SubscriberReference extends WeakReference<Object> {
+        private volatile Subscription subscription;
+
+        SubscriberReference(Object subscriber, ReferenceQueue<Object> queue) {
+            super(subscriber, queue);
+        }
     }
 }
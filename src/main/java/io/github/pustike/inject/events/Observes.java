@@ -32,4 +32,65 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Observes {
+    /**
+     * Whether events are delivered to this observer asynchronously, using the executor of the event bus. Events
+     * published by a thread are submitted to the executor in the order they are published, but they are delivered in
+     * this order only when the executor runs tasks sequentially, for ex: a single thread executor.
+     * @return {@code true} if events are delivered asynchronously
+     */
+    boolean async() default false;
+
+    /**
+     * The name of an {@link java.util.concurrent.Executor} binding qualified with {@link jakarta.inject.Named}, used
+     * to deliver events to this observer asynchronously, instead of the executor of the event bus. The executor is
+     * looked up from the injector when the first event is delivered to this observer.
+     * @return the name of the executor binding, or an empty string to use the executor of the event bus
+     */
+    String executor() default "";
+
+    /**
+     * The types of event source accepted by this observer. When specified, only events which are instances of
+     * {@link java.util.EventObject}, like {@link Event}, with a source that is an instance of one of these types are
+     * delivered to this observer. The source type is checked before the observer instance is looked up.
+     * @return the accepted types of event source, or an empty array to accept events from any source
+     */
+    Class<?>[] sourceType() default {};
+
+    /**
+     * The name of a static method declared in the observer class, which accepts the observed event as its only
+     * parameter and returns {@code true} if the event should be delivered to this observer. The filter is evaluated
+     * before the observer instance is looked up, so that ignored events don't create or look up the observer. For ex:
+     * <pre>{@code
+     * @Observes(filter = "isLargeOrder")
+     * void onOrderCreated(OrderCreatedEvent event) { ... }
+     *
+     * static boolean isLargeOrder(OrderCreatedEvent event) {
+     *     return event.getOrder().getAmount() > 1000;
+     * }
+     * }</pre>
+     * @return the name of the static filter method, or an empty string to deliver all events
+     */
+    String filter() default "";
+
+    /**
+     * The number of events delivered to this observer in a batch. When it is positive, the observer method must have
+     * a {@code List<E>} parameter to observe events of type {@code E}, which are accumulated and delivered as a list
+     * when the batch size is reached, when the {@link #maxDelayMs() maximum delay} is elapsed, or when the event bus is
+     * closed. So that observers of high-volume events, like metrics samples, amortize the cost of invocation and do
+     * bulk operations. For ex:
+     * <pre>{@code
+     * @Observes(batchSize = 500, maxDelayMs = 50)
+     * void onSamples(List<MetricSample> samples) { ... }
+     * }</pre>
+     * Filters are evaluated for each event before it is added to the batch.
+     * @return the batch size, or {@code 0} to deliver each event separately
+     */
+    int batchSize() default 0;
+
+    /**
+     * The maximum delay in milliseconds, after the first event is added to a batch, before the batch is delivered to
+     * this observer on the scheduler thread of the event bus, even if the batch size is not reached.
+     * @return the maximum delay in milliseconds, or {@code 0} to deliver a batch only when it is full
+     */
+    long maxDelayMs() default 0;
 }
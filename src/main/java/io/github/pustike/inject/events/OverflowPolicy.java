@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+/**
+ * Policy applied when an event is published to the {@link EventBus}, while its ring buffer is full.
+ * @see EventBusModule#withRingBuffer(int, int, WaitStrategy, OverflowPolicy)
+ */
+public enum OverflowPolicy {
+    /**
+     * The publishing thread waits using the {@link WaitStrategy}, till there is space in the ring buffer.
+     */
+    BLOCK,
+    /**
+     * The oldest event in the ring buffer is dropped, to make space for the published event.
+     */
+    DROP_OLDEST,
+    /**
+     * The published event is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The published event is delivered to observers on the publishing thread.
+     */
+    CALLER_RUNS
+}
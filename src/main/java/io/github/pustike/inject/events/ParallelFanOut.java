@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Delivers an event to its observers in parallel on a {@link ForkJoinPool}, when the number of observers reaches the
+ * threshold, and waits until all of them are invoked. Observers are split recursively into halves, so that idle
+ * workers of the pool steal them. Exceptions thrown by observers don't stop the event from being delivered to other
+ * observers, and they are thrown after all observers are invoked, as the first exception with others suppressed.
+ */
+final class ParallelFanOut {
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final Set<Class<?>> eventTypes;
+
+    ParallelFanOut(ForkJoinPool pool, int threshold, Set<Class<?>> eventTypes) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.eventTypes = eventTypes;
+    }
+
+    /**
+     * Checks whether the event should be delivered to the given number of observers in parallel.
+     */
+    boolean accepts(Object event, int observerCount) {
+        return observerCount >= threshold && (eventTypes.isEmpty() || eventTypes.contains(event.getClass()));
+    }
+
+    void deliver(EventBus eventBus, Object event, Observer[] observers) {
+        ConcurrentLinkedQueue<Throwable> exceptions = new ConcurrentLinkedQueue<>();
+        pool.invoke(new DeliveryTask(eventBus, event, observers, 0, observers.length, exceptions));
+        Throwable exception = exceptions.poll();
+        if (exception != null) {
+            for (Throwable suppressed; (suppressed = exceptions.poll()) != null; ) {
+                exception.addSuppressed(suppressed);
+            }
+            if (exception instanceof Error) {
+                throw (Error) exception;
+            }
+            throw (RuntimeException) exception;
+        }
+    }
+
+    private static final class DeliveryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient EventBus eventBus;
+        private final transient Object event;
+        private final transient Observer[] observers;
+        private final int from, to;
+        private final transient ConcurrentLinkedQueue<Throwable> exceptions;
+
+        DeliveryTask(EventBus eventBus, Object event, Observer[] observers, int from, int to,
+                ConcurrentLinkedQueue<Throwable> exceptions) {
+            this.eventBus = eventBus;
+            this.event = event;
+            this.observers = observers;
+            this.from = from;
+            this.to = to;
+            this.exceptions = exceptions;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    eventBus.deliverEvent(event, observers[from]);
+                } catch (RuntimeException | Error e) {
+                    exceptions.add(e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DeliveryTask(eventBus, event, observers, from, middle, exceptions),
+                    new DeliveryTask(eventBus, event, observers, middle, to, exceptions));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dispatches events to observers on partitions, which are lanes with a ring buffer drained by a single consumer
+ * thread each. The partition of an event is selected using the hash code of the key given by its publisher, so that
+ * events of the same key, like events of an account, are delivered in the order they are published on a thread,
+ * while events of different keys are delivered in parallel on other partitions.
+ */
+final class PartitionedDispatcher {
+    private final RingBufferDispatcher[] partitions;
+
+    PartitionedDispatcher(String name, EventBus eventBus, Dispatcher dispatcher, int partitionCount, int capacity,
+            WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        this.partitions = new RingBufferDispatcher[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new RingBufferDispatcher(name + "-partition-" + i, eventBus, dispatcher, capacity, 1,
+                    waitStrategy, overflowPolicy);
+        }
+    }
+
+    void publish(Object event, Object partitionKey, Observer[] eventObservers) {
+        partitions[getPartition(partitionKey)].publish(event, eventObservers);
+    }
+
+    private int getPartition(Object partitionKey) {
+        int hash = partitionKey.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitions.length); // spread the higher bits of the hash code
+    }
+
+    List<QueueStats> getStats() {
+        List<QueueStats> statsList = new ArrayList<>(partitions.length);
+        for (RingBufferDispatcher partition : partitions) {
+            statsList.add(partition.getStats());
+        }
+        return statsList;
+    }
+
+    /**
+     * Stops accepting events and waits for consumer threads of all partitions to deliver the events in them.
+     */
+    void close() {
+        for (RingBufferDispatcher partition : partitions) {
+            partition.close();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+/**
+ * Statistics of a ring buffer used by the {@link EventBus} to deliver events, which is the ring buffer of the event bus
+ * or of one of its partitions. Instances of this class are immutable snapshots of the counters at the time they are
+ * created.
+ * @see EventBus#getQueueStats()
+ */
+public final class QueueStats {
+    private final String name;
+    private final int capacity;
+    private final int queueDepth;
+    private final long publishedCount;
+    private final long droppedCount;
+    private final long callerRunsCount;
+
+    QueueStats(String name, int capacity, int queueDepth, long publishedCount, long droppedCount,
+            long callerRunsCount) {
+        this.name = name;
+        this.capacity = capacity;
+        this.queueDepth = queueDepth;
+        this.publishedCount = publishedCount;
+        this.droppedCount = droppedCount;
+        this.callerRunsCount = callerRunsCount;
+    }
+
+    /**
+     * Returns the name of the ring buffer, like {@code eventbus} or {@code eventbus-partition-0}.
+     * @return the name of the ring buffer
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of events the ring buffer can hold.
+     * @return the capacity of the ring buffer
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of events in the ring buffer, waiting to be delivered.
+     * @return the number of events waiting to be delivered
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of events added to the ring buffer.
+     * @return the number of events added to the ring buffer
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * Returns the number of events dropped when the ring buffer was full, either the oldest or the newest event as per
+     * the {@link OverflowPolicy}.
+     * @return the number of events dropped
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Returns the number of events delivered on the publishing thread when the ring buffer was full, as per the
+     * {@link OverflowPolicy#CALLER_RUNS} policy.
+     * @return the number of events delivered on the publishing thread
+     */
+    public long getCallerRunsCount() {
+        return callerRunsCount;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueStats{name=" + name + ", capacity=" + capacity + ", queueDepth=" + queueDepth
+                + ", publishedCount=" + publishedCount + ", droppedCount=" + droppedCount
+                + ", callerRunsCount=" + callerRunsCount + '}';
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Dispatches events to observers on consumer threads, through a bounded ring buffer pre-allocated between publishing
+ * threads and consumer threads. It is a multi-producer and multi-consumer queue, where each slot has a sequence
+ * number that tells whether it is ready to be written or read, so that publishers and consumers only contend on a
+ * compare-and-set of their position. Consumers take events in batches and deliver them to observers in order.
+ * <p>
+ * Events published on a consumer thread (by observers) are dispatched on that thread directly, to avoid blocking the
+ * consumer on its own ring buffer.
+ */
+final class RingBufferDispatcher {
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final int SPIN_TRIES = 100, YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 100_000;
+    private final String name;
+    private final EventBus eventBus;
+    private final Dispatcher dispatcher;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Object[] events;
+    private final Observer[][] observers;
+    private final AtomicLong enqueuePosition;
+    private final AtomicLong dequeuePosition;
+    private final LongAdder publishedCount;
+    private final LongAdder droppedCount;
+    private final LongAdder callerRunsCount;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final AtomicInteger waitingConsumers;
+    // publishers which passed the running check, so that consumers don't stop before their events are delivered
+    private final AtomicInteger activePublishers;
+    private final Thread[] consumerThreads;
+    private volatile boolean running;
+
+    RingBufferDispatcher(String name, EventBus eventBus, Dispatcher dispatcher, int capacity, int consumerCount,
+            WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        this.name = name;
+        this.eventBus = eventBus;
+        this.dispatcher = dispatcher;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.events = new Object[capacity];
+        this.observers = new Observer[capacity][];
+        this.enqueuePosition = new AtomicLong();
+        this.dequeuePosition = new AtomicLong();
+        this.publishedCount = new LongAdder();
+        this.droppedCount = new LongAdder();
+        this.callerRunsCount = new LongAdder();
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.waitingConsumers = new AtomicInteger();
+        this.activePublishers = new AtomicInteger();
+        this.running = true;
+        this.consumerThreads = new Thread[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            Thread thread = new Thread(this::consumeEvents, name + "-consumer-" + i);
+            thread.setDaemon(true);
+            consumerThreads[i] = thread;
+            thread.start();
+        }
+    }
+
+    void publish(Object event, Observer[] eventObservers) {
+        if (isConsumerThread()) {
+            if (!running) {
+                throw new IllegalStateException("The event bus is closed");
+            }
+            dispatcher.dispatch(event, eventObservers);
+            return;
+        }
+        // counted before checking whether it is running, which is cleared by close before consumers check this count
+        activePublishers.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("The event bus is closed");
+            }
+            offerOrApplyPolicy(event, eventObservers);
+        } finally {
+            activePublishers.decrementAndGet();
+        }
+    }
+
+    private void offerOrApplyPolicy(Object event, Observer[] eventObservers) {
+        for (int attempt = 0; !offer(event, eventObservers); attempt++) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    droppedCount.increment();
+                    return;
+                case DROP_OLDEST:
+                    if (poll(null, null, 0, 1) == 1) {
+                        droppedCount.increment();
+                    }
+                    break;
+                case CALLER_RUNS:
+                    callerRunsCount.increment();
+                    dispatcher.dispatch(event, eventObservers);
+                    return;
+                default: // BLOCK
+                    idle(attempt, true);
+                    if (!running) {
+                        throw new IllegalStateException("The event bus is closed");
+                    }
+            }
+        }
+        publishedCount.increment();
+        if (waitingConsumers.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean offer(Object event, Observer[] eventObservers) {
+        long position = enqueuePosition.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                return false; // the ring buffer is full
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+        events[index] = event;
+        observers[index] = eventObservers;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Takes at most {@code maxCount} events from the ring buffer, into the given batch arrays if they are not null.
+     * @return the number of events taken
+     */
+    private int poll(Object[] eventBatch, Observer[][] observerBatch, int offset, int maxCount) {
+        int count = 0;
+        while (count < maxCount) {
+            long position = dequeuePosition.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    if (eventBatch != null) {
+                        eventBatch[offset + count] = events[index];
+                        observerBatch[offset + count] = observers[index];
+                    }
+                    events[index] = null;
+                    observers[index] = null;
+                    sequences.lazySet(index, position + mask + 1);
+                    count++;
+                }
+            } else if (difference < 0) {
+                break; // the ring buffer is empty
+            }
+        }
+        return count;
+    }
+
+    private void consumeEvents() {
+        int batchSize = Math.min(MAX_BATCH_SIZE, mask + 1);
+        Object[] eventBatch = new Object[batchSize];
+        Observer[][] observerBatch = new Observer[batchSize][];
+        int idleCount = 0;
+        while (true) {
+            int count = poll(eventBatch, observerBatch, 0, batchSize);
+            if (count == 0) {
+                // stops only when no publisher can add an event after the ring buffer was found empty
+                if (!running && activePublishers.get() == 0 && dequeuePosition.get() == enqueuePosition.get()) {
+                    return;
+                }
+                idle(idleCount++, false);
+                continue;
+            }
+            idleCount = 0;
+            for (int i = 0; i < count; i++) {
+                deliverEvent(eventBatch[i], observerBatch[i]);
+            }
+            Arrays.fill(eventBatch, 0, count, null);
+            Arrays.fill(observerBatch, 0, count, null);
+        }
+    }
+
+    private void deliverEvent(Object event, Observer[] eventObservers) {
+        for (Observer observer : eventObservers) {
+            try {
+                eventBus.deliverEvent(event, observer);
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    private void idle(int attempt, boolean publisher) {
+        if (waitStrategy == WaitStrategy.BUSY_SPIN || attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+            return;
+        }
+        switch (waitStrategy) {
+            case YIELDING:
+                Thread.yield();
+                break;
+            case SLEEPING:
+                if (attempt < YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                break;
+            default: // BLOCKING
+                if (publisher) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                } else {
+                    awaitEvents();
+                }
+        }
+    }
+
+    private void awaitEvents() {
+        lock.lock();
+        try {
+            // publishers signal only when a consumer is waiting, so it must be counted before checking for events
+            waitingConsumers.incrementAndGet();
+            if (running && dequeuePosition.get() == enqueuePosition.get()) {
+                notEmpty.awaitUninterruptibly();
+            }
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private boolean isConsumerThread() {
+        Thread currentThread = Thread.currentThread();
+        for (Thread consumerThread : consumerThreads) {
+            if (consumerThread == currentThread) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    QueueStats getStats() {
+        int queueDepth = (int) Math.max(0, enqueuePosition.get() - dequeuePosition.get());
+        return new QueueStats(name, mask + 1, queueDepth, publishedCount.sum(), droppedCount.sum(),
+                callerRunsCount.sum());
+    }
+
+    /**
+     * Stops accepting events and waits for consumer threads to deliver the events in the ring buffer, including the
+     * events of publishers which were accepted before it is closed.
+     */
+    void close() {
+        running = false;
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        for (Thread consumerThread : consumerThreads) {
+            while (consumerThread != Thread.currentThread() && consumerThread.isAlive()) {
+                try {
+                    consumerThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Subscription of an instance to the {@link EventBus}, created using {@link EventBus#subscribe(Object)}. Observer
+ * methods of the subscriber receive events until the subscription is closed. For ex:
+ * <pre>{@code
+ * try (Subscription subscription = eventBus.subscribe(sessionHandler)) {
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class Subscription implements AutoCloseable {
+    private final ObserverRegistry registry;
+    private final Observer[] observers;
+    private final AtomicBoolean active;
+
+    Subscription(ObserverRegistry registry, Observer[] observers) {
+        this.registry = registry;
+        this.observers = observers;
+        this.active = new AtomicBoolean(true);
+    }
+
+    /**
+     * Checks whether this subscription is active, which is until it is closed or the weakly held subscriber is garbage
+     * collected.
+     * @return {@code true} if this subscription is not closed
+     */
+    public boolean isActive() {
+        return active.get();
+    }
+
+    /**
+     * Unregisters observer methods of the subscriber, so that it doesn't receive further events. Events which are
+     * being dispatched concurrently may still be delivered. Closing an inactive subscription has no effect.
+     */
+    @Override
+    public void close() {
+        if (active.compareAndSet(true, false)) {
+            registry.unregister(observers);
+        }
+    }
+}
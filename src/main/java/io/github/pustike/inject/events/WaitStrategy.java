@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.events;
+
+/**
+ * Strategy used by threads waiting on the ring buffer of the {@link EventBus}: consumer threads when there are no
+ * events to deliver, and publishing threads when the ring buffer is full and the {@link OverflowPolicy#BLOCK} policy
+ * is used.
+ * @see EventBusModule#withRingBuffer(int, int, WaitStrategy, OverflowPolicy)
+ */
+public enum WaitStrategy {
+    /**
+     * Consumer threads wait on a lock until events are published, and publishing threads park for a short time. It
+     * uses the least CPU when idle, at the cost of higher latency.
+     */
+    BLOCKING,
+    /**
+     * Threads spin, then yield and then park for a short time. It balances the CPU usage and latency.
+     */
+    SLEEPING,
+    /**
+     * Threads spin and then yield, which gives low latency but keeps using the CPU when idle.
+     */
+    YIELDING,
+    /**
+     * Threads busy spin, which gives the lowest latency but uses a full CPU core per waiting thread.
+     */
+    BUSY_SPIN
+}
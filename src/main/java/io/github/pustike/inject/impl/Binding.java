@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import jakarta.inject.Provider;
 
 import io.github.pustike.inject.BindingKey;
@@ -74,6 +75,21 @@ final class Binding<T> {
         }
     }
 
+    void warmUp(DefaultInjector injector, Set<Binding<?>> visitedBindings) {
+        if (!visitedBindings.add(this)) {
+            return;// already warmed up, or being warmed up by another thread
+        }
+        if (multiBinder) {
+            for (Binding<T> binding : ((MultiBindingProvider<T>) provider).bindingList) {
+                binding.warmUp(injector, visitedBindings);
+            }
+        } else if (provider instanceof InstanceProvider) {
+            ((InstanceProvider<T>) provider).warmUp(injector, visitedBindings);
+        } else if (!providerInjected) {
+            injector.loadInjectionPoints(provider.getClass(), visitedBindings);
+        }
+    }
+
     Object getInstance(BindingKey<?> targetKey) {
         return multiBinder ? ((MultiBindingProvider<?>) provider).getInstance(targetKey) :
                 targetKey.isProviderKey() ? this.scopedProvider : this.scopedProvider.get();
@@ -28,6 +28,7 @@ import java.util.function.Predicate;
 
 import io.github.pustike.inject.BindingKey;
 import io.github.pustike.inject.Scope;
+import io.github.pustike.inject.TypeLiteral;
 import io.github.pustike.inject.bind.AnnotatedBindingBuilder;
 import io.github.pustike.inject.bind.Binder;
 import io.github.pustike.inject.bind.LinkedBindingBuilder;
@@ -75,6 +76,11 @@ final class DefaultBinder implements Binder {
         return addNewBindingBuilder(BindingKey.of(instanceType), false);
     }
 
+    @Override
+    public <T> AnnotatedBindingBuilder<T> bind(TypeLiteral<T> typeLiteral) {
+        return addNewBindingBuilder(BindingKey.of(typeLiteral), false);
+    }
+
     @Override
     public <T> LinkedBindingBuilder<T> bind(BindingKey<T> key) {
         return addNewBindingBuilder(key, false);
@@ -27,6 +27,7 @@ import jakarta.inject.Provider;
 import io.github.pustike.inject.BindingKey;
 import io.github.pustike.inject.Names;
 import io.github.pustike.inject.Scope;
+import io.github.pustike.inject.TypeLiteral;
 import io.github.pustike.inject.bind.AnnotatedBindingBuilder;
 import io.github.pustike.inject.bind.LinkedBindingBuilder;
 import io.github.pustike.inject.bind.MultiBinder;
@@ -199,8 +200,11 @@ final class DefaultBindingBuilder<T> implements AnnotatedBindingBuilder<T>, Mult
         if (addingBinding) {
             doAddBinding();
         }
-        BindingKey<T> bindingKey = sourceAnnotation != null ? BindingKey.of(sourceKey.getType(), sourceAnnotation)
-                : BindingKey.of(sourceKey.getType(), sourceAnnotationType);
+        TypeLiteral<T> sourceType = sourceKey.getTypeLiteral();
+        BindingKey<T> bindingKey = sourceAnnotation != null ? BindingKey.of(sourceType, sourceAnnotation)
+                : sourceAnnotationType != null ? BindingKey.of(sourceType, sourceAnnotationType)
+                : sourceKey.getAnnotation() != null ? BindingKey.of(sourceType, sourceKey.getAnnotation())
+                : BindingKey.of(sourceType, sourceKey.getAnnotationType());
         bindingKey = multiBinder ? (BindingKey<T>) bindingKey.toListType() : bindingKey;
         Binding<T> binding = multiBinder ? new Binding<>(bindingKey, bindingList, getScope(), injector)
                 : new Binding<>(bindingKey, getInstanceProvider(), getScope(), injector);
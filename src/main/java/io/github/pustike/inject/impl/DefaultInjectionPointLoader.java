@@ -15,82 +15,144 @@
  */
 package io.github.pustike.inject.impl;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
-import jakarta.inject.Inject;
 
+import io.github.pustike.inject.spi.CacheStats;
 import io.github.pustike.inject.spi.InjectionPoint;
 import io.github.pustike.inject.spi.InjectionPointLoader;
-import io.github.pustike.inject.utils.ReflectionUtils;
 
 /**
- * Default Injection Point Loader.
+ * Default Injection Point Loader, which stores injection points using a {@link ClassValue}, so that the cache doesn't
+ * prevent classes and their class loaders from being unloaded. When a maximum size is specified, injection points of
+ * the least recently used classes are evicted, to keep the cache within this size. Classes are then kept in access
+ * order, which is updated under a lock when cached injection points are used.
  */
-final class DefaultInjectionPointLoader implements InjectionPointLoader {
-    private final Map<Class<?>, List<InjectionPoint<Object>>> injectionPointCache;
+public final class DefaultInjectionPointLoader implements InjectionPointLoader {
+    private final int maximumSize;
+    private final Map<ClassReference, Boolean> accessOrder;
+    private final ReferenceQueue<Class<?>> unloadedClasses;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder evictionCount;
+    private volatile ClassValue<CacheEntry> injectionPointCache;
 
-    DefaultInjectionPointLoader() {
-        this.injectionPointCache = new ConcurrentHashMap<>();
+    /**
+     * Creates an injection point loader, with no limit on the number of classes cached.
+     */
+    public DefaultInjectionPointLoader() {
+        this(0);
+    }
+
+    /**
+     * Creates an injection point loader, which caches injection points of at most {@code maximumSize} classes.
+     * @param maximumSize the maximum number of classes to cache, or {@code 0} for no limit
+     * @throws IllegalArgumentException if the maximum size is negative
+     */
+    public DefaultInjectionPointLoader(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximum size can not be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.accessOrder = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ClassReference, Boolean> eldest) {
+                if (size() <= DefaultInjectionPointLoader.this.maximumSize) {
+                    return false;
+                }
+                Class<?> clazz = eldest.getKey().get();
+                if (clazz != null) {
+                    injectionPointCache.remove(clazz);
+                    evictionCount.increment();
+                }
+                return true;
+            }
+        };
+        this.unloadedClasses = new ReferenceQueue<>();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.evictionCount = new LongAdder();
+        this.injectionPointCache = createCache();
     }
 
     @Override
     public List<InjectionPoint<Object>> getInjectionPoints(Class<?> clazz,
             Function<Class<?>, List<InjectionPoint<Object>>> creator) {
-        return injectionPointCache.computeIfAbsent(clazz, creator);
+        CacheEntry cacheEntry = injectionPointCache.get(clazz);
+        List<InjectionPoint<Object>> injectionPoints = cacheEntry.injectionPoints;
+        if (injectionPoints == null) {
+            synchronized (cacheEntry) {
+                injectionPoints = cacheEntry.injectionPoints;
+                if (injectionPoints == null) {
+                    missCount.increment();
+                    injectionPoints = creator.apply(clazz);
+                    cacheEntry.injectionPoints = injectionPoints;
+                    onLoaded(clazz, cacheEntry);
+                    return injectionPoints;
+                }
+            }
+        }
+        hitCount.increment();
+        ClassReference reference = cacheEntry.reference;
+        if (reference != null) {
+            synchronized (accessOrder) {
+                accessOrder.get(reference); // moves the class to the end of the access order
+            }
+        }
+        return injectionPoints;
     }
 
     @Override
     public void invalidateAll() {
-        injectionPointCache.clear();
+        synchronized (accessOrder) {
+            // entries of the discarded class value are removed from classes when it is garbage collected
+            injectionPointCache = createCache();
+            accessOrder.clear();
+        }
     }
 
-    static List<InjectionPoint<Object>> doCreateInjectionPoints(final Class<?> targetClass) {
-        List<InjectionPoint<Object>> injectionPointList = new LinkedList<>();
-        Collection<Integer> visitedMethodHashCodes = new HashSet<>();
-        for (Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
-            int index = 0, staticIndex = 0;
-            for (Field field : ReflectionUtils.getDeclaredFields(clazz)) {
-                if (field.getDeclaredAnnotation(Inject.class) != null) {
-                    final int idx = Modifier.isStatic(field.getModifiers()) ? staticIndex++ : index;
-                    injectionPointList.add(idx, new FieldInjectionPoint<>(field));
-                    index++;
-                }
-            }
-            for (Method method : ReflectionUtils.getDeclaredMethods(clazz)) {
-                int hashCode = computeHashCode(clazz, method);
-                if (!visitedMethodHashCodes.contains(hashCode)) {
-                    visitedMethodHashCodes.add(hashCode);
-                    if (method.getDeclaredAnnotation(Inject.class) != null) {
-                        final int idx = Modifier.isStatic(method.getModifiers()) ? staticIndex++ : index;
-                        injectionPointList.add(idx, new ExecutableInjectionPoint<>(method));
-                        index++;
-                    }
-                }
+    @Override
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum());
+    }
+
+    private void onLoaded(Class<?> clazz, CacheEntry cacheEntry) {
+        if (maximumSize == 0) {
+            return;
+        }
+        ClassReference reference = new ClassReference(clazz, unloadedClasses);
+        cacheEntry.reference = reference;
+        synchronized (accessOrder) {
+            for (Object unloaded; (unloaded = unloadedClasses.poll()) != null; ) {
+                accessOrder.remove(unloaded);
             }
+            // evicts the least recently used class, when the cache is larger than its maximum size
+            accessOrder.put(reference, Boolean.TRUE);
         }
-        return injectionPointList;
     }
 
-    private static int computeHashCode(Class<?> clazz, Method method) {
-        int hashCode = 31 + method.getName().hashCode();
-        for (Class<?> parameterType : method.getParameterTypes()) {
-            hashCode = 31 * hashCode + parameterType.hashCode();
-        }
-        int modifiers = method.getModifiers();
-        if (!Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers)
-                && !Modifier.isPrivate(modifiers)) { // package-private
-            hashCode = 31 * hashCode + clazz.getPackage().hashCode();
-        } else if (Modifier.isPrivate(modifiers)) {
-            hashCode = 31 * hashCode + clazz.hashCode(); // private method
+    private static ClassValue<CacheEntry> createCache() {
+        return new ClassValue<>() {
+            @Override
+            protected CacheEntry computeValue(Class<?> type) {
+                return new CacheEntry();
+            }
+        };
+    }
+
+    private static final class CacheEntry {
+        private volatile List<InjectionPoint<Object>> injectionPoints;
+        private volatile ClassReference reference;
+    }
+
+    private static final class ClassReference extends WeakReference<Class<?>> {
+        ClassReference(Class<?> clazz, ReferenceQueue<Class<?>> queue) {
+            super(clazz, queue);
         }
-        return hashCode;
     }
 }
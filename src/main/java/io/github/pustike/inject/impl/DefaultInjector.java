@@ -15,14 +15,17 @@
  */
 package io.github.pustike.inject.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 import jakarta.inject.Provider;
 
@@ -40,7 +43,7 @@ import io.github.pustike.inject.spi.InjectionPointLoader;
 public final class DefaultInjector implements Injector {
     private final Map<BindingKey<?>, Binding<?>> keyBindingMap;
     private final InjectionPointLoader injectionPointLoader;
-    private final Function<Class<?>, List<InjectionPoint<Object>>> injectionPointCreator;
+    private final InjectionPointScanner injectionPointCreator;
     private final Map<InjectionListener, Predicate<Class<?>>> injectionListenerMatcherMap;
     private DefaultInjector parentInjector;
     private boolean configured;
@@ -85,7 +88,7 @@ public final class DefaultInjector implements Injector {
         this.keyBindingMap = new ConcurrentHashMap<>();
         this.injectionPointLoader = injectionPointLoader == null //
                 ? new DefaultInjectionPointLoader() : injectionPointLoader;
-        this.injectionPointCreator = DefaultInjectionPointLoader::doCreateInjectionPoints;
+        this.injectionPointCreator = new InjectionPointScanner();
         this.injectionListenerMatcherMap = new LinkedHashMap<>();
     }
 
@@ -155,10 +158,19 @@ public final class DefaultInjector implements Injector {
         if (!configured) {
             throw new IllegalStateException("Bindings can be obtained only after the Injector is fully configured!");
         }
+        Binding<T> binding = findBinding(bindingKey);
+        if (binding == null && bindingKey != null && !bindingKey.getTypeLiteral().isRawType()) {
+            // a generic type can be injected using the binding registered for its raw type
+            binding = findBinding(bindingKey.toRawType());
+        }
+        return binding;
+    }
+
+    private <T> Binding<T> findBinding(BindingKey<T> bindingKey) {
         @SuppressWarnings("unchecked")
         Binding<T> binding = bindingKey != null ? (Binding<T>) keyBindingMap.get(bindingKey) : null;
         if (binding == null && parentInjector != null) {
-            binding = parentInjector.getBinding(bindingKey);
+            binding = parentInjector.findBinding(bindingKey);
         }
         return binding;
     }
@@ -197,6 +209,58 @@ public final class DefaultInjector implements Injector {
         }
     }
 
+    void loadInjectionPoints(Class<?> type, Set<Binding<?>> visitedBindings) {
+        for (InjectionPoint<Object> injectionPoint : injectionPointLoader
+                .getInjectionPoints(type, injectionPointCreator)) {
+            warmUpTargets(injectionPoint, visitedBindings);
+        }
+    }
+
+    void warmUpTargets(InjectionPoint<?> injectionPoint, Set<Binding<?>> visitedBindings) {
+        if (injectionPoint instanceof ExecutableInjectionPoint) {
+            for (InjectionTarget<?> injectionTarget : ((ExecutableInjectionPoint<?>) injectionPoint)
+                    .getInjectionTargets()) {
+                warmUp(injectionTarget.getBindingKey(), visitedBindings);
+            }
+        } else if (injectionPoint instanceof FieldInjectionPoint) {
+            warmUp(((FieldInjectionPoint<?>) injectionPoint).getInjectionTarget().getBindingKey(), visitedBindings);
+        }
+    }
+
+    // resolves the binding in the same order as getBinding and warms it up using the injector it is registered in
+    private void warmUp(BindingKey<?> bindingKey, Set<Binding<?>> visitedBindings) {
+        for (DefaultInjector injector = this; injector != null; injector = injector.parentInjector) {
+            Binding<?> binding = injector.keyBindingMap.get(bindingKey);
+            if (binding != null) {
+                binding.warmUp(injector, visitedBindings);
+                return;
+            }
+        }
+        if (!bindingKey.getTypeLiteral().isRawType()) {
+            warmUp(bindingKey.toRawType(), visitedBindings);
+        }
+    }
+
+    /**
+     * Loads injection points of all bound types in this injector and its parents in parallel, without creating any
+     * instance. Injection points of a binding are loaded using the injector it is registered in, and the bindings of
+     * its injection targets are warmed up transitively, each binding only once.
+     * @param executor the executor to load injection points in
+     * @return a future that completes when injection points of all bindings are loaded
+     */
+    public CompletableFuture<Void> warmUp(Executor executor) {
+        List<CompletableFuture<Void>> futureList = new ArrayList<>();
+        Set<Binding<?>> visitedBindings = ConcurrentHashMap.newKeySet();
+        for (DefaultInjector injector = this; injector != null; injector = injector.parentInjector) {
+            final DefaultInjector bindingInjector = injector;
+            for (Binding<?> binding : injector.keyBindingMap.values()) {
+                futureList.add(CompletableFuture.runAsync(() -> binding.warmUp(bindingInjector, visitedBindings),
+                        executor));
+            }
+        }
+        return CompletableFuture.allOf(futureList.toArray(new CompletableFuture<?>[0]));
+    }
+
     public void dispose() {
         keyBindingMap.clear();
         injectionPointLoader.invalidateAll();
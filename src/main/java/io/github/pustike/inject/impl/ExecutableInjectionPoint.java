@@ -55,6 +55,14 @@ final class ExecutableInjectionPoint<T> implements InjectionPoint<T> {
         return new ExecutableInjectionPoint<>(defaultConstructor);
     }
 
+    Executable getExecutable() {
+        return executable;
+    }
+
+    InjectionTarget<?>[] getInjectionTargets() {
+        return injectionTargets;
+    }
+
     @Override
     public Object injectTo(T instance, Injector injector) throws NoSuchBindingException {
         if (isStaticMethodInjected) {
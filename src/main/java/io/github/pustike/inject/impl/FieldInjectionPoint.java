@@ -36,6 +36,14 @@ final class FieldInjectionPoint<T> implements InjectionPoint<T> {
         }
     }
 
+    Field getField() {
+        return field;
+    }
+
+    InjectionTarget<T> getInjectionTarget() {
+        return injectionTarget;
+    }
+
     @Override
     public Object injectTo(T instance, Injector injector) throws NoSuchBindingException {
         if (isStaticFieldInjected) {
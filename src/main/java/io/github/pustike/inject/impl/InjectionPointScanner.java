@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import jakarta.inject.Inject;
+
+import io.github.pustike.inject.spi.InjectionPoint;
+import io.github.pustike.inject.utils.ReflectionUtils;
+
+/**
+ * Creates injection points of a target class by scanning it and all its super-classes for fields and methods
+ * annotated with {@link Inject}. Each class in the hierarchy is scanned in one pass over its declared fields and
+ * methods. The scanner doesn't cache them, as the injection points of target classes are cached by the
+ * {@link io.github.pustike.inject.spi.InjectionPointLoader}, which bounds the memory used by them.
+ * <p>
+ * Injection points of super-classes are ordered before those of sub-classes, and within a class, static fields and
+ * methods are ordered before instance fields and methods. A method overridden in a sub-class is not injected.
+ */
+final class InjectionPointScanner implements Function<Class<?>, List<InjectionPoint<Object>>> {
+    private static final InjectionPoint<Object>[] NO_INJECTION_POINTS = createArray(0);
+
+    @Override
+    public List<InjectionPoint<Object>> apply(Class<?> targetClass) {
+        List<DeclaredInjectionPoints> hierarchy = new ArrayList<>();
+        int count = 0;
+        for (Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            DeclaredInjectionPoints declared = DeclaredInjectionPoints.scan(clazz);
+            hierarchy.add(declared);
+            count += declared.size();
+        }
+        if (count == 0) {
+            return List.of();
+        }
+        // methods overridden in sub-classes are not injected
+        Set<MethodSignature> visitedMethods = new HashSet<>();
+        boolean[][] overriddenMethods = new boolean[hierarchy.size()][];
+        for (int i = 0, size = hierarchy.size(); i < size; i++) {
+            DeclaredInjectionPoints declared = hierarchy.get(i);
+            if (!visitedMethods.isEmpty()) {
+                count -= declared.markOverridden(visitedMethods, overriddenMethods, i);
+            }
+            if (i < size - 1) {
+                visitedMethods.addAll(Arrays.asList(declared.methodSignatures));
+            }
+        }
+        // super-class injection points are ordered first
+        InjectionPoint<Object>[] injectionPoints = createArray(count);
+        int index = 0;
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            index = hierarchy.get(i).copyTo(injectionPoints, index, overriddenMethods[i]);
+        }
+        return List.of(injectionPoints);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static InjectionPoint<Object>[] createArray(int length) {
+        return (InjectionPoint<Object>[]) new InjectionPoint<?>[length];
+    }
+
+    /**
+     * Injection points declared in a class, which are ordered as: static fields, static methods, instance fields and
+     * instance methods. Signatures of all methods declared in the class are also kept to find overridden methods.
+     */
+    private static final class DeclaredInjectionPoints {
+        private final InjectionPoint<Object>[] staticFields;
+        private final InjectionPoint<Object>[] staticMethods;
+        private final MethodSignature[] staticMethodSignatures;
+        private final InjectionPoint<Object>[] instanceFields;
+        private final InjectionPoint<Object>[] instanceMethods;
+        private final MethodSignature[] instanceMethodSignatures;
+        private final MethodSignature[] methodSignatures;
+
+        private DeclaredInjectionPoints(List<InjectionPoint<Object>> staticFields,
+                List<InjectionPoint<Object>> staticMethods, List<MethodSignature> staticMethodSignatures,
+                List<InjectionPoint<Object>> instanceFields, List<InjectionPoint<Object>> instanceMethods,
+                List<MethodSignature> instanceMethodSignatures, MethodSignature[] methodSignatures) {
+            this.staticFields = staticFields.toArray(NO_INJECTION_POINTS);
+            this.staticMethods = staticMethods.toArray(NO_INJECTION_POINTS);
+            this.staticMethodSignatures = staticMethodSignatures.toArray(new MethodSignature[0]);
+            this.instanceFields = instanceFields.toArray(NO_INJECTION_POINTS);
+            this.instanceMethods = instanceMethods.toArray(NO_INJECTION_POINTS);
+            this.instanceMethodSignatures = instanceMethodSignatures.toArray(new MethodSignature[0]);
+            this.methodSignatures = methodSignatures;
+        }
+
+        static DeclaredInjectionPoints scan(Class<?> clazz) {
+            List<InjectionPoint<Object>> staticFields = new ArrayList<>(), instanceFields = new ArrayList<>();
+            for (Field field : ReflectionUtils.getDeclaredFields(clazz)) {
+                if (field.getDeclaredAnnotation(Inject.class) != null) {
+                    boolean isStatic = Modifier.isStatic(field.getModifiers());
+                    (isStatic ? staticFields : instanceFields).add(new FieldInjectionPoint<>(field));
+                }
+            }
+            List<InjectionPoint<Object>> staticMethods = new ArrayList<>(), instanceMethods = new ArrayList<>();
+            List<MethodSignature> staticSignatures = new ArrayList<>(), instanceSignatures = new ArrayList<>();
+            Method[] declaredMethods = ReflectionUtils.getDeclaredMethods(clazz);
+            Set<MethodSignature> visitedMethods = new HashSet<>();
+            for (Method method : declaredMethods) {
+                MethodSignature signature = new MethodSignature(clazz, method);
+                // bridge methods can have the same signature, only the first one in sorted order is used
+                if (visitedMethods.add(signature) && method.getDeclaredAnnotation(Inject.class) != null) {
+                    if (Modifier.isStatic(method.getModifiers())) {
+                        staticMethods.add(new ExecutableInjectionPoint<>(method));
+                        staticSignatures.add(signature);
+                    } else {
+                        instanceMethods.add(new ExecutableInjectionPoint<>(method));
+                        instanceSignatures.add(signature);
+                    }
+                }
+            }
+            return new DeclaredInjectionPoints(staticFields, staticMethods, staticSignatures, instanceFields,
+                    instanceMethods, instanceSignatures, visitedMethods.toArray(new MethodSignature[0]));
+        }
+
+        int size() {
+            return staticFields.length + staticMethods.length + instanceFields.length + instanceMethods.length;
+        }
+
+        /**
+         * Marks injectable methods of this class that are overridden by the visited methods of sub-classes.
+         * @return the number of overridden methods
+         */
+        int markOverridden(Set<MethodSignature> visitedMethods, boolean[][] overriddenMethods, int index) {
+            int count = 0, staticCount = staticMethodSignatures.length;
+            for (int i = 0, length = staticCount + instanceMethodSignatures.length; i < length; i++) {
+                MethodSignature signature = i < staticCount ? staticMethodSignatures[i]
+                        : instanceMethodSignatures[i - staticCount];
+                if (visitedMethods.contains(signature)) {
+                    if (overriddenMethods[index] == null) {
+                        overriddenMethods[index] = new boolean[length];
+                    }
+                    overriddenMethods[index][i] = true;
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int copyTo(InjectionPoint<Object>[] injectionPoints, int index, boolean[] overridden) {
+            System.arraycopy(staticFields, 0, injectionPoints, index, staticFields.length);
+            index += staticFields.length;
+            index = copyMethods(staticMethods, 0, injectionPoints, index, overridden);
+            System.arraycopy(instanceFields, 0, injectionPoints, index, instanceFields.length);
+            index += instanceFields.length;
+            return copyMethods(instanceMethods, staticMethods.length, injectionPoints, index, overridden);
+        }
+
+        private static int copyMethods(InjectionPoint<Object>[] methods, int offset,
+                InjectionPoint<Object>[] injectionPoints, int index, boolean[] overridden) {
+            if (overridden == null) {
+                System.arraycopy(methods, 0, injectionPoints, index, methods.length);
+                return index + methods.length;
+            }
+            for (int i = 0; i < methods.length; i++) {
+                if (!overridden[offset + i]) {
+                    injectionPoints[index++] = methods[i];
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Signature of a method, used to find methods overridden in sub-classes. Package-private methods can only be
+     * overridden by methods in the same package and private methods are never overridden.
+     */
+    private static final class MethodSignature {
+        private final String name;
+        private final Class<?>[] parameterTypes;
+        private final Object visibility;
+        private final int hashCode;
+
+        MethodSignature(Class<?> clazz, Method method) {
+            this.name = method.getName();
+            this.parameterTypes = method.getParameterTypes();
+            int modifiers = method.getModifiers();
+            if (Modifier.isPrivate(modifiers)) {
+                this.visibility = clazz;
+            } else if (!Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers)) { // package-private
+                this.visibility = clazz.getPackage();
+            } else {
+                this.visibility = null;
+            }
+            int result = 31 * name.hashCode() + Arrays.hashCode(parameterTypes);
+            this.hashCode = visibility == null ? result : 31 * result + visibility.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof MethodSignature)) {
+                return false;
+            }
+            MethodSignature other = (MethodSignature) obj;
+            return hashCode == other.hashCode && name.equals(other.name) && visibility == other.visibility
+                    && Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -17,7 +17,6 @@ package io.github.pustike.inject.impl;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Executable;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.List;
@@ -27,6 +26,7 @@ import jakarta.inject.Qualifier;
 
 import io.github.pustike.inject.BindingKey;
 import io.github.pustike.inject.Injector;
+import io.github.pustike.inject.TypeLiteral;
 
 final class InjectionTarget<T> {
     private final BindingKey<T> bindingKey;
@@ -60,36 +60,28 @@ final class InjectionTarget<T> {
 
     @SuppressWarnings("unchecked")
     private BindingKey<T> createBindingKey(Type genericType, Annotation[] annotations) {
-        Type rawType = genericType instanceof ParameterizedType ?
-                ((ParameterizedType) genericType).getRawType() : genericType;
-        this.optionalType = Optional.class.equals(rawType);
+        TypeLiteral<?> typeLiteral = TypeLiteral.get(genericType);
+        this.optionalType = Optional.class.equals(typeLiteral.getRawType());
         if (this.optionalType) {
-            genericType = getTypeArgument(genericType);
-            rawType = genericType instanceof ParameterizedType ?
-                    ((ParameterizedType) genericType).getRawType() : genericType;
+            typeLiteral = getTypeArgument(typeLiteral);
         }
+        Class<?> rawType = typeLiteral.getRawType();
         boolean isMultiBinder = List.class.equals(rawType) || Collection.class.equals(rawType)
                 || Iterable.class.equals(rawType);
         if (isMultiBinder) {
-            genericType = getTypeArgument(genericType);
-            rawType = genericType instanceof ParameterizedType ?
-                    ((ParameterizedType) genericType).getRawType() : genericType;
+            typeLiteral = getTypeArgument(typeLiteral);
         }
-        boolean isProviderType = Provider.class.equals(rawType);
-        Class<T> bindingType = (Class<T>) (isProviderType ? getTypeArgument(genericType) : rawType);
-        BindingKey<T> bindingKey = BindingKey.of(bindingType, getQualifierAnnotation(annotations));
+        boolean isProviderType = Provider.class.equals(typeLiteral.getRawType());
+        if (isProviderType) {
+            typeLiteral = getTypeArgument(typeLiteral);
+        }
+        BindingKey<T> bindingKey = BindingKey.of((TypeLiteral<T>) typeLiteral, getQualifierAnnotation(annotations));
         bindingKey = isMultiBinder ? (BindingKey<T>) bindingKey.toListType() : bindingKey;
         return isProviderType ? (BindingKey<T>) bindingKey.toProviderType() : bindingKey;
     }
 
-    private static Type getTypeArgument(Type genericType) {
-        if (genericType instanceof ParameterizedType) {
-            Type[] typeArgs = ((ParameterizedType) genericType).getActualTypeArguments();
-            if (typeArgs != null && typeArgs.length == 1) {
-                return typeArgs[0];
-            }
-        }
-        return genericType;
+    private static TypeLiteral<?> getTypeArgument(TypeLiteral<?> typeLiteral) {
+        return typeLiteral.getTypeArgumentCount() == 1 ? typeLiteral.getTypeArgument(0) : typeLiteral;
     }
 
     private static Annotation getQualifierAnnotation(Annotation[] annotations) {
@@ -18,6 +18,7 @@ package io.github.pustike.inject.impl;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Executable;
 import java.lang.reflect.Method;
+import java.util.Set;
 import jakarta.inject.Provider;
 
 import io.github.pustike.inject.Injector;
@@ -33,7 +34,7 @@ final class InstanceProvider<T> implements Provider<T> {
     private final Class<?> providerType;
     private Provider<?> providerInstance;
     private Injector injector;
-    private InjectionPoint<Object> injectionPoint;
+    private volatile InjectionPoint<Object> injectionPoint;
 
     private InstanceProvider(Class<? extends T> targetType, Executable executable, Object methodInstance,
             Class<?> providerType) {
@@ -63,6 +64,26 @@ final class InstanceProvider<T> implements Provider<T> {
         this.injector = injector;
     }
 
+    /**
+     * Prepares the injection point used to create new instances and loads injection points of the members of the
+     * provided type, without creating any instance. Bindings of their injection targets are warmed up as well.
+     */
+    void warmUp(DefaultInjector injector, Set<Binding<?>> visitedBindings) {
+        if (providerType != null) {
+            injector.warmUpTargets(ExecutableInjectionPoint.create(providerType), visitedBindings);
+            injector.loadInjectionPoints(providerType, visitedBindings);
+            return;
+        }
+        injector.warmUpTargets(getInjectionPoint(), visitedBindings);
+        if (targetType != null) {
+            injector.loadInjectionPoints(targetType, visitedBindings);
+        } else if (executable instanceof Method) {
+            injector.loadInjectionPoints(((Method) executable).getReturnType(), visitedBindings);
+        } else {
+            injector.loadInjectionPoints(executable.getDeclaringClass(), visitedBindings);
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public T get() {
@@ -82,7 +103,8 @@ final class InstanceProvider<T> implements Provider<T> {
     }
 
     private InjectionPoint<Object> getInjectionPoint() {
-        return injectionPoint == null ? injectionPoint = createInjectionPoint() : injectionPoint;
+        InjectionPoint<Object> injectionPoint = this.injectionPoint;
+        return injectionPoint == null ? this.injectionPoint = createInjectionPoint() : injectionPoint;
     }
 
     private InjectionPoint<Object> createInjectionPoint() {
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+import io.github.pustike.inject.spi.CacheStats;
+import io.github.pustike.inject.spi.InjectionPoint;
+import io.github.pustike.inject.spi.InjectionPointLoader;
+
+/**
+ * Injection Point Loader, which persists the fields and methods discovered as injection points to a binary file, so
+ * that classes are not scanned again when the application is restarted. Entries in the file are keyed by the class
+ * name and a hash of the class files of the class and all its super-classes, and an entry is used only when this
+ * hash matches, so that changed classes are scanned again.
+ * <p>
+ * The file is memory-mapped and validated when this loader is created, and it is ignored if it is not valid. Newly
+ * scanned classes are written back to the file when {@link #invalidateAll()} is invoked, i.e. when the injector is
+ * disposed. As the file is only a cache, failures to write it, for ex: on a read-only file system, are ignored and
+ * classes are scanned again on the next start. Injection points loaded from either the file or by scanning are
+ * cached in memory using the {@link DefaultInjectionPointLoader}.
+ */
+public final class PersistentInjectionPointLoader implements InjectionPointLoader {
+    private static final int MAGIC = 0x50494950; // "PIIP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final byte FIELD = 0, METHOD = 1;
+    private static final long NO_HASH = -1L;
+    private static final Map<String, Class<?>> primitiveTypes = Map.of("boolean", boolean.class, "byte", byte.class,
+            "char", char.class, "short", short.class, "int", int.class, "long", long.class, "float", float.class,
+            "double", double.class);
+    private static final ClassValue<Long> classFileHashes = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            return computeClassFileHash(type);
+        }
+    };
+    private final Path cacheFile;
+    private final DefaultInjectionPointLoader injectionPointLoader;
+    private final Map<String, ByteBuffer> scannedClasses;
+    private volatile MappedMetadata mappedMetadata;
+
+    /**
+     * Creates an injection point loader, which persists injection points to the given cache file.
+     * @param cacheFile the file to load injection points from and to save them to
+     */
+    public PersistentInjectionPointLoader(Path cacheFile) {
+        this.cacheFile = cacheFile.toAbsolutePath();
+        this.injectionPointLoader = new DefaultInjectionPointLoader();
+        this.scannedClasses = new ConcurrentHashMap<>();
+        this.mappedMetadata = MappedMetadata.load(this.cacheFile);
+    }
+
+    @Override
+    public List<InjectionPoint<Object>> getInjectionPoints(Class<?> clazz,
+            Function<Class<?>, List<InjectionPoint<Object>>> creator) {
+        return injectionPointLoader.getInjectionPoints(clazz, targetClass -> loadInjectionPoints(targetClass, creator));
+    }
+
+    @Override
+    public void invalidateAll() {
+        try {
+            save();
+        } catch (UncheckedIOException e) {
+            // the cache file is optional, so that a failure to write it doesn't fail disposing the injector
+        } finally {
+            injectionPointLoader.invalidateAll();
+        }
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return injectionPointLoader.getStats();
+    }
+
+    private List<InjectionPoint<Object>> loadInjectionPoints(Class<?> clazz,
+            Function<Class<?>, List<InjectionPoint<Object>>> creator) {
+        long hash = computeHierarchyHash(clazz);
+        if (hash == NO_HASH) {
+            return creator.apply(clazz);
+        }
+        ByteBuffer mappedEntry = mappedMetadata.getEntry(clazz.getName(), hash);
+        if (mappedEntry != null) {
+            List<InjectionPoint<Object>> injectionPoints = resolveInjectionPoints(clazz, mappedEntry);
+            if (injectionPoints != null) {
+                return injectionPoints;
+            }
+        }
+        List<InjectionPoint<Object>> injectionPoints = creator.apply(clazz);
+        ByteBuffer entry = encodeEntry(clazz.getName(), hash, injectionPoints);
+        if (entry != null) {
+            scannedClasses.put(clazz.getName(), entry);
+        }
+        return injectionPoints;
+    }
+
+    private static List<InjectionPoint<Object>> resolveInjectionPoints(Class<?> clazz, ByteBuffer entry) {
+        try {
+            int memberCount = entry.getInt();
+            List<InjectionPoint<Object>> injectionPoints = new ArrayList<>(memberCount);
+            for (int i = 0; i < memberCount; i++) {
+                byte kind = entry.get();
+                Class<?> declaringClass = findDeclaringClass(clazz, readString(entry));
+                String name = readString(entry);
+                if (kind == FIELD) {
+                    Field field = declaringClass.getDeclaredField(name);
+                    injectionPoints.add(new FieldInjectionPoint<>(field));
+                } else {
+                    Class<?>[] parameterTypes = new Class<?>[entry.getShort()];
+                    for (int j = 0; j < parameterTypes.length; j++) {
+                        parameterTypes[j] = loadClass(readString(entry), declaringClass.getClassLoader());
+                    }
+                    Method method = declaringClass.getDeclaredMethod(name, parameterTypes);
+                    injectionPoints.add(new ExecutableInjectionPoint<>(method));
+                }
+            }
+            return List.copyOf(injectionPoints);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // the class is scanned again, when its metadata can not be resolved
+        }
+    }
+
+    private static Class<?> findDeclaringClass(Class<?> clazz, String className) throws ClassNotFoundException {
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            if (current.getName().equals(className)) {
+                return current;
+            }
+        }
+        throw new ClassNotFoundException(className);
+    }
+
+    private static Class<?> loadClass(String className, ClassLoader classLoader) throws ClassNotFoundException {
+        Class<?> primitiveType = primitiveTypes.get(className);
+        return primitiveType != null ? primitiveType : Class.forName(className, false, classLoader);
+    }
+
+    private static long computeHierarchyHash(Class<?> clazz) {
+        long hash = 17;
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            long classFileHash = classFileHashes.get(current);
+            if (classFileHash == NO_HASH) {
+                return NO_HASH;
+            }
+            hash = 31 * hash + classFileHash;
+        }
+        return hash;
+    }
+
+    private static long computeClassFileHash(Class<?> clazz) {
+        String className = clazz.getName();
+        String resourceName = className.substring(className.lastIndexOf('.') + 1) + ".class";
+        try (InputStream inputStream = clazz.getResourceAsStream(resourceName)) {
+            if (inputStream == null) {
+                return NO_HASH; // hidden or generated classes don't have a class file
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(inputStream.readAllBytes());
+            return checksum.getValue();
+        } catch (IOException e) {
+            return NO_HASH;
+        }
+    }
+
+    private synchronized void save() {
+        if (scannedClasses.isEmpty()) {
+            return;
+        }
+        Map<String, ByteBuffer> classes = new HashMap<>(scannedClasses);
+        MappedMetadata metadata = this.mappedMetadata;
+        List<ByteBuffer> entries = new ArrayList<>(metadata.entryCount() + classes.size());
+        metadata.forEachEntry((className, entry) -> {
+            if (!classes.containsKey(className)) {
+                entries.add(entry);
+            }
+        });
+        for (ByteBuffer entry : classes.values()) {
+            entries.add(entry.duplicate());
+        }
+        int bodySize = 0;
+        for (ByteBuffer entry : entries) {
+            bodySize += Integer.BYTES + entry.remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+        buffer.position(HEADER_SIZE);
+        for (ByteBuffer entry : entries) {
+            buffer.putInt(entry.remaining()).put(entry);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.flip().position(HEADER_SIZE));
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, entries.size()).putInt(12, (int) checksum.getValue());
+        Path tempFile = null;
+        try {
+            Path parentDir = cacheFile.getParent();
+            Files.createDirectories(parentDir);
+            tempFile = Files.createTempFile(parentDir, cacheFile.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                buffer.rewind();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new UncheckedIOException("error when saving injection points to " + cacheFile, e);
+        }
+        classes.forEach(scannedClasses::remove);
+        this.mappedMetadata = MappedMetadata.load(cacheFile);
+    }
+
+    private static void deleteQuietly(Path tempFile) {
+        if (tempFile != null) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                // the temporary file is left behind, when it can not be deleted
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Encodes the fields and methods of the given injection points as an entry, which contains: class name, hierarchy
+     * hash, member count and for each member: kind, declaring class name, member name and for methods, the parameter
+     * count and the parameter type names.
+     * @return the encoded entry, or {@code null} if injection points are created by a custom creator
+     */
+    private static ByteBuffer encodeEntry(String className, long hash, List<InjectionPoint<Object>> injectionPoints) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+        try (DataOutputStream output = new DataOutputStream(outputStream)) {
+            writeString(output, className);
+            output.writeLong(hash);
+            output.writeInt(injectionPoints.size());
+            for (InjectionPoint<Object> injectionPoint : injectionPoints) {
+                if (injectionPoint instanceof FieldInjectionPoint) {
+                    Field field = ((FieldInjectionPoint<?>) injectionPoint).getField();
+                    output.writeByte(FIELD);
+                    writeString(output, field.getDeclaringClass().getName());
+                    writeString(output, field.getName());
+                } else if (injectionPoint instanceof ExecutableInjectionPoint
+                        && ((ExecutableInjectionPoint<?>) injectionPoint).getExecutable() instanceof Method) {
+                    Executable method = ((ExecutableInjectionPoint<?>) injectionPoint).getExecutable();
+                    output.writeByte(METHOD);
+                    writeString(output, method.getDeclaringClass().getName());
+                    writeString(output, method.getName());
+                    output.writeShort(method.getParameterCount());
+                    for (Class<?> parameterType : method.getParameterTypes()) {
+                        writeString(output, parameterType.getName());
+                    }
+                } else {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("error when encoding injection points of " + className, e);
+        }
+        return ByteBuffer.wrap(outputStream.toByteArray());
+    }
+
+    /**
+     * The memory-mapped cache file, with an index of entry offsets by class name. An entry is decoded only when
+     * the injection points of its class are loaded.
+     */
+    private static final class MappedMetadata {
+        private static final MappedMetadata EMPTY = new MappedMetadata(ByteBuffer.allocate(0), Map.of());
+        private final ByteBuffer buffer;
+        private final Map<String, Integer> entryOffsets;
+
+        private MappedMetadata(ByteBuffer buffer, Map<String, Integer> entryOffsets) {
+            this.buffer = buffer;
+            this.entryOffsets = entryOffsets;
+        }
+
+        static MappedMetadata load(Path cacheFile) {
+            if (!Files.isRegularFile(cacheFile)) {
+                return EMPTY;
+            }
+            try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    return EMPTY;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    return EMPTY;
+                }
+                CRC32C checksum = new CRC32C();
+                checksum.update(buffer.duplicate().position(HEADER_SIZE));
+                if (buffer.getInt(12) != (int) checksum.getValue()) {
+                    return EMPTY;
+                }
+                int entryCount = buffer.getInt(8);
+                Map<String, Integer> entryOffsets = new HashMap<>(entryCount * 4 / 3 + 1);
+                ByteBuffer reader = buffer.duplicate().position(HEADER_SIZE);
+                for (int i = 0; i < entryCount; i++) {
+                    int length = reader.getInt(), offset = reader.position();
+                    entryOffsets.put(readString(reader), offset);
+                    reader.position(offset + length);
+                }
+                return new MappedMetadata(buffer, entryOffsets);
+            } catch (IOException | RuntimeException e) {
+                return EMPTY; // an invalid cache file is ignored and replaced when saved
+            }
+        }
+
+        int entryCount() {
+            return entryOffsets.size();
+        }
+
+        /**
+         * Returns the entry of the given class positioned after its hash, only if the hash matches.
+         */
+        ByteBuffer getEntry(String className, long hash) {
+            Integer offset = entryOffsets.get(className);
+            if (offset == null) {
+                return null;
+            }
+            try {
+                ByteBuffer entry = buffer.duplicate().position(offset);
+                entry.position(offset + Short.BYTES + Short.toUnsignedInt(entry.getShort()));
+                return entry.getLong() == hash ? entry : null;
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        void forEachEntry(BiConsumer<String, ByteBuffer> consumer) {
+            for (Map.Entry<String, Integer> mapEntry : entryOffsets.entrySet()) {
+                int offset = mapEntry.getValue(), length = buffer.getInt(offset - Integer.BYTES);
+                consumer.accept(mapEntry.getKey(), buffer.duplicate().position(offset).limit(offset + length));
+            }
+        }
+    }
+}
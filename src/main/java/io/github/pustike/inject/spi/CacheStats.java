@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject.spi;
+
+/**
+ * Statistics about the performance of a cache, like the {@link InjectionPointLoader}. Instances of this class are
+ * immutable snapshots of the statistics at the time they were taken.
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    /**
+     * Constructs a new cache stats instance.
+     * @param hitCount      the number of cache hits
+     * @param missCount     the number of cache misses
+     * @param evictionCount the number of cache evictions
+     * @throws IllegalArgumentException if any of the values is negative
+     */
+    public CacheStats(long hitCount, long missCount, long evictionCount) {
+        if (hitCount < 0 || missCount < 0 || evictionCount < 0) {
+            throw new IllegalArgumentException("cache stats can not be negative");
+        }
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Returns the number of times the cache lookup returned a cached value.
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of times the cache lookup had to create a new value.
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of entries that have been evicted, to keep the cache size within its maximum size.
+     * @return the number of cache evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of times the cache lookup was performed, i.e. the sum of hit and miss counts.
+     * @return the number of cache requests
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of cache requests which were hits, or {@code 1.0} if there were no requests.
+     * @return the cache hit rate
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+                + '}';
+    }
+}
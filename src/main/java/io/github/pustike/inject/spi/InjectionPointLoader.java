@@ -23,8 +23,10 @@ import java.util.function.Function;
  * through target types.
  * <p>
  * It also provides an utility method to create injection points by reflectively scanning through target types.
- * The default internal implementation stores these injection points in a ConcurrentHashMap, but custom
- * implementations can use an advanced backing cache to store them. Following is a sample custom injection point
+ * The default internal implementation stores these injection points using weak references to the classes, so that
+ * classes and their class loaders can be unloaded. It can be bounded to a maximum size using the loader created by
+ * {@link io.github.pustike.inject.Injectors#createInjectionPointLoader(int)}. Custom implementations can also use an
+ * advanced backing cache to store them. Following is a sample custom injection point
  * loader used when creating the injector:
  * <pre><code>
  * CaffeineInjectionPointLoader injectionPointLoader = new CaffeineInjectionPointLoader();
@@ -67,4 +69,13 @@ public interface InjectionPointLoader {
      * Clears all cached injection points data, invoked when injector is disposed.
      */
     void invalidateAll();
+
+    /**
+     * Returns a snapshot of the statistics of this loader's cache. Implementations that do not record statistics,
+     * return stats with all counts as zero.
+     * @return the current cache statistics
+     */
+    default CacheStats getStats() {
+        return new CacheStats(0, 0, 0);
+    }
 }
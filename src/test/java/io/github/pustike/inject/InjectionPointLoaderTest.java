@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.pustike.inject.spi.CacheStats;
+import io.github.pustike.inject.spi.InjectionPoint;
+import io.github.pustike.inject.spi.InjectionPointLoader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InjectionPointLoaderTest {
+    @Test
+    public void testBoundedLoader() {
+        InjectionPointLoader injectionPointLoader = Injectors.createInjectionPointLoader(2);
+        Injector injector = Injectors.create(injectionPointLoader, List.of(binder -> {
+            binder.bind(ServiceA.class);
+            binder.bind(ServiceB.class);
+            binder.bind(ServiceC.class);
+        }));
+        assertNotNull(injector.getInstance(ServiceA.class).serviceB.serviceC);
+        CacheStats stats = injectionPointLoader.getStats();
+        assertEquals(3, stats.getMissCount());
+        assertEquals(0, stats.getHitCount());
+        assertEquals(1, stats.getEvictionCount());
+        // ServiceA was evicted, but ServiceB and ServiceC are still cached
+        injector.getInstance(ServiceB.class);
+        injector.getInstance(ServiceC.class);
+        stats = injectionPointLoader.getStats();
+        assertEquals(3, stats.getMissCount());
+        assertEquals(3, stats.getHitCount());
+        injector.getInstance(ServiceA.class);
+        assertEquals(6, injectionPointLoader.getStats().getMissCount());
+        Injectors.dispose(injector);
+        // the least recently used class is evicted, not the least recently loaded one
+        InjectionPointLoader lruLoader = Injectors.createInjectionPointLoader(2);
+        lruLoader.getInjectionPoints(ServiceA.class, clazz -> List.of());
+        lruLoader.getInjectionPoints(ServiceB.class, clazz -> List.of());
+        lruLoader.getInjectionPoints(ServiceA.class, clazz -> List.of());
+        lruLoader.getInjectionPoints(ServiceC.class, clazz -> List.of());
+        lruLoader.getInjectionPoints(ServiceA.class, clazz -> {
+            throw new AssertionError("recently used class should not be evicted: " + clazz);
+        });
+        lruLoader.getInjectionPoints(ServiceB.class, clazz -> List.of());
+        assertEquals(4, lruLoader.getStats().getMissCount());
+        assertEquals(2, lruLoader.getStats().getEvictionCount());
+        assertThrows(IllegalArgumentException.class, () -> Injectors.createInjectionPointLoader(-1));
+    }
+
+    @Test
+    public void testClassUnloading() throws Exception {
+        InjectionPointLoader injectionPointLoader = Injectors.createInjectionPointLoader(1);
+        ReferenceQueue<ClassLoader> unloadedLoaders = new ReferenceQueue<>();
+        WeakReference<ClassLoader> loaderReference = loadInThrowawayLoader(injectionPointLoader, unloadedLoaders);
+        // the cached injection points don't keep the class or its class loader reachable
+        Object collected = null;
+        for (int i = 0; i < 50 && collected == null; i++) {
+            System.gc();
+            collected = unloadedLoaders.remove(100);
+        }
+        assertSame(loaderReference, collected, "class loader should be collected");
+        assertEquals(1, injectionPointLoader.getStats().getMissCount());
+        assertEquals(1, injectionPointLoader.getStats().getHitCount());
+    }
+
+    private static WeakReference<ClassLoader> loadInThrowawayLoader(InjectionPointLoader injectionPointLoader,
+            ReferenceQueue<ClassLoader> queue) throws Exception {
+        ThrowawayClassLoader classLoader = new ThrowawayClassLoader();
+        Class<?> clazz = classLoader.loadClass(ServiceC.class.getName());
+        assertNotSame(ServiceC.class, clazz);
+        injectionPointLoader.getInjectionPoints(clazz, type -> List.of());
+        injectionPointLoader.getInjectionPoints(clazz, type -> {
+            throw new AssertionError("class should not be scanned again: " + type);
+        });
+        return new WeakReference<>(classLoader, queue);
+    }
+
+    @Test
+    public void testPersistentLoader(@TempDir Path tempDir) throws IOException {
+        Path cacheFile = tempDir.resolve("injection-points.bin");
+        Injector injector = Injectors.create(Injectors.createInjectionPointLoader(cacheFile), List.of(binder -> {
+            binder.bind(ServiceA.class);
+            binder.bind(ServiceB.class);
+            binder.bind(ServiceC.class);
+            binder.bind(ServiceD.class);
+        }));
+        assertNotNull(injector.getInstance(ServiceD.class).serviceC);
+        assertNotNull(injector.getInstance(ServiceA.class).serviceB);
+        Injectors.dispose(injector);
+        assertTrue(Files.size(cacheFile) > 0);
+        // injection points of unchanged classes are loaded from the cache file, without scanning them again
+        InjectionPointLoader injectionPointLoader = Injectors.createInjectionPointLoader(cacheFile);
+        assertEquals(1, injectionPointLoader.getInjectionPoints(ServiceD.class, clazz -> {
+            throw new AssertionError("class should not be scanned: " + clazz);
+        }).size());
+        assertEquals(1, injectionPointLoader.getInjectionPoints(ServiceA.class, clazz -> List.of()).size());
+        injector = Injectors.create(injectionPointLoader, List.of(binder -> {
+            binder.bind(ServiceC.class);
+            binder.bind(ServiceD.class);
+        }));
+        ServiceD serviceD = injector.getInstance(ServiceD.class);
+        assertNotNull(serviceD.serviceC);
+        assertNotNull(serviceD.initializedWith);
+        Injectors.dispose(injector);
+        // an invalid cache file is ignored
+        Files.write(cacheFile, new byte[]{1, 2, 3, 4});
+        injectionPointLoader = Injectors.createInjectionPointLoader(cacheFile);
+        assertEquals(0, injectionPointLoader.getInjectionPoints(ServiceD.class, clazz -> List.of()).size());
+    }
+
+    @Test
+    public void testUnwritableCacheFile(@TempDir Path tempDir) throws IOException {
+        // the parent of the cache file is a regular file, so the cache file can not be written
+        Path cacheFile = Files.createFile(tempDir.resolve("not-a-directory")).resolve("injection-points.bin");
+        InjectionPointLoader injectionPointLoader = Injectors.createInjectionPointLoader(cacheFile);
+        Injector injector = Injectors.create(injectionPointLoader, List.of(binder -> {
+            binder.bind(ServiceB.class);
+            binder.bind(ServiceC.class);
+        }));
+        assertNotNull(injector.getInstance(ServiceB.class).serviceC);
+        Injectors.dispose(injector);
+        assertFalse(Files.exists(cacheFile));
+    }
+
+    @Test
+    public void testWarmUp() {
+        InjectionPointLoader injectionPointLoader = Injectors.createInjectionPointLoader(0);
+        Injector parentInjector = Injectors.create(injectionPointLoader,
+                List.of(binder -> binder.bind(ServiceC.class)));
+        Injector injector = parentInjector.createChildInjector(binder -> {
+            binder.bind(ServiceA.class);
+            binder.bind(ServiceB.class);
+            binder.bind(ServiceD.class);
+        });
+        int instanceCount = ServiceD.instanceCount.get();
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Injectors.warmUp(injector, executorService).join();
+        } finally {
+            executorService.shutdown();
+        }
+        assertEquals(instanceCount, ServiceD.instanceCount.get());
+        // bound services and the provider of the injector binding itself
+        assertEquals(5, injectionPointLoader.getStats().getMissCount());
+        assertNotNull(injector.getInstance(ServiceD.class).serviceC);
+        assertNotNull(injector.getInstance(ServiceA.class).serviceB);
+        assertEquals(5, injectionPointLoader.getStats().getMissCount());
+        Injectors.dispose(injector);
+        Injectors.dispose(parentInjector);
+    }
+
+    @Test
+    public void testTransitiveWarmUp() {
+        Map<Class<?>, AtomicInteger> loadCountMap = new ConcurrentHashMap<>();
+        InjectionPointLoader injectionPointLoader = new InjectionPointLoader() {
+            @Override
+            public List<InjectionPoint<Object>> getInjectionPoints(Class<?> clazz,
+                    Function<Class<?>, List<InjectionPoint<Object>>> creator) {
+                loadCountMap.computeIfAbsent(clazz, key -> new AtomicInteger()).incrementAndGet();
+                return creator.apply(clazz);
+            }
+
+            @Override
+            public void invalidateAll() {
+            }
+        };
+        Injector injector = Injectors.create(injectionPointLoader, List.of(binder -> {
+            binder.bind(ServiceA.class);
+            binder.bind(ServiceB.class);
+            binder.bind(ServiceC.class);
+            binder.bind(ServiceE.class);
+            binder.bind(ServiceF.class);
+        }));
+        List<Runnable> taskList = new ArrayList<>();
+        CompletableFuture<Void> future = Injectors.warmUp(injector, taskList::add);
+        // whichever binding is warmed up first, the dependencies of loaded types are loaded by the same task
+        Map<Class<?>, Class<?>> dependencyMap = Map.of(ServiceA.class, ServiceB.class, ServiceB.class, ServiceC.class,
+                ServiceE.class, ServiceF.class, ServiceF.class, ServiceE.class);
+        for (Runnable task : taskList) {
+            task.run();
+            dependencyMap.forEach((type, dependency) -> assertTrue(!loadCountMap.containsKey(type)
+                    || loadCountMap.containsKey(dependency), type + " is loaded without " + dependency));
+        }
+        assertTrue(future.isDone());
+        // each type is loaded only once, even with a dependency cycle between ServiceE and ServiceF
+        for (Class<?> type : List.of(ServiceA.class, ServiceB.class, ServiceC.class, ServiceE.class,
+                ServiceF.class)) {
+            assertEquals(1, loadCountMap.get(type).get());
+        }
+        assertNotNull(injector.getInstance(ServiceF.class).serviceE.serviceF.get());
+        Injectors.dispose(injector);
+    }
+
+    /**
+     * Defines a copy of the {@link ServiceC} class, which can be unloaded when this class loader is unreachable.
+     */
+    private static final class ThrowawayClassLoader extends ClassLoader {
+        ThrowawayClassLoader() {
+            super(InjectionPointLoaderTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(ServiceC.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            String resourceName = name.substring(name.lastIndexOf('.') + 1) + ".class";
+            try (InputStream inputStream = InjectionPointLoaderTest.class.getResourceAsStream(resourceName)) {
+                byte[] bytes = inputStream.readAllBytes();
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    public static class ServiceA {
+        @Inject
+        ServiceB serviceB;
+    }
+
+    public static class ServiceB {
+        @Inject
+        ServiceC serviceC;
+    }
+
+    public static class ServiceC {
+    }
+
+    public static class ServiceE {
+        @Inject
+        Provider<ServiceF> serviceF;
+    }
+
+    public static class ServiceF {
+        @Inject
+        ServiceE serviceE;
+    }
+
+    public static class ServiceD {
+        static final AtomicInteger instanceCount = new AtomicInteger();
+        ServiceC serviceC;
+        ServiceC initializedWith;
+
+        public ServiceD() {
+            instanceCount.incrementAndGet();
+        }
+
+        @Inject
+        void setServiceC(ServiceC serviceC) {
+            this.serviceC = serviceC;
+            this.initializedWith = serviceC;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.pustike.inject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TypeLiteralTest {
+    @Test
+    public void testCanonicalTypes() throws Exception {
+        TypeLiteral<Cache<String, User>> userCacheType = new TypeLiteral<>() {};
+        TypeLiteral<?> fieldType = TypeLiteral.get(CacheClient.class.getDeclaredField("userCache").getGenericType());
+        assertEquals(userCacheType, fieldType);
+        assertEquals(userCacheType.hashCode(), fieldType.hashCode());
+        assertEquals(userCacheType.getFingerprint(), fieldType.getFingerprint());
+        assertEquals(userCacheType, TypeLiteral.getParameterized(Cache.class, String.class, User.class));
+        assertNotEquals(userCacheType, new TypeLiteral<Cache<Long, Order>>() {});
+        assertSame(Cache.class, userCacheType.getRawType());
+        assertEquals(TypeLiteral.get(String.class), userCacheType.getTypeArgument(0));
+        assertSame(TypeLiteral.get(User.class), TypeLiteral.get(User.class));
+        assertEquals(new TypeLiteral<Map<String, List<User>>>() {}.toString(),
+                "java.util.Map<java.lang.String, java.util.List<" + User.class.getName() + ">>");
+    }
+
+    @Test
+    public void testGenericBindingKeys() {
+        BindingKey<Cache<String, User>> userCacheKey = BindingKey.of(new TypeLiteral<>() {});
+        BindingKey<Cache<Long, Order>> orderCacheKey = BindingKey.of(new TypeLiteral<>() {});
+        assertNotEquals(userCacheKey, orderCacheKey);
+        assertNotEquals(userCacheKey, BindingKey.of(Cache.class));
+        assertEquals(BindingKey.of(Cache.class), userCacheKey.toRawType());
+        assertEquals(userCacheKey, BindingKey.of(new TypeLiteral<Cache<String, User>>() {}));
+        assertNotEquals(userCacheKey, BindingKey.of(new TypeLiteral<Cache<String, User>>() {}, "named"));
+        assertEquals(BindingKey.of(User.class, "named"), BindingKey.of(TypeLiteral.get(User.class), "named"));
+    }
+
+    @Test
+    public void testGenericInjection() {
+        Cache<String, User> userCache = new Cache<>();
+        Cache<Long, Order> orderCache = new Cache<>();
+        Injector injector = Injectors.create(binder -> {
+            binder.bind(new TypeLiteral<Cache<String, User>>() {}).toInstance(userCache);
+            binder.bind(new TypeLiteral<Cache<Long, Order>>() {}).toInstance(orderCache);
+            binder.bind(new TypeLiteral<Cache<String, Order>>() {}).named("raw").toInstance(new Cache<>());
+            binder.bind(Repository.class);
+            binder.bind(CacheClient.class);
+        });
+        CacheClient client = injector.getInstance(CacheClient.class);
+        assertSame(userCache, client.userCache);
+        assertSame(orderCache, client.orderCache.get());
+        assertTrue(client.missingCache.isEmpty());
+        // generic type is injected using the binding of its raw type, if it is not bound explicitly
+        assertTrue(client.userRepository instanceof Repository);
+        assertSame(orderCache, injector.getInstance(BindingKey.of(new TypeLiteral<Cache<Long, Order>>() {})));
+        assertThrows(NoSuchBindingException.class, () -> injector.getInstance(Cache.class));
+        Injectors.dispose(injector);
+    }
+
+    public static class Cache<K, V> {
+    }
+
+    public static class Repository<T> {
+    }
+
+    public static class User {
+    }
+
+    public static class Order {
+    }
+
+    public static class CacheClient {
+        @Inject
+        private Cache<String, User> userCache;
+        @Inject
+        private Provider<Cache<Long, Order>> orderCache;
+        @Inject
+        private Optional<Cache<Long, User>> missingCache;
+        @Inject
+        private Repository<User> userRepository;
+    }
+}
@@ -15,16 +15,59 @@
  */
 package io.github.pustike.inject.events;
 
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.github.pustike.inject.Injector;
 import io.github.pustike.inject.Injectors;
+import io.github.pustike.inject.Names;
+import io.github.pustike.inject.TypeLiteral;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class EventBusTest {
     private static Injector injector;
@@ -35,6 +78,8 @@ public class EventBusTest {
             binder.setDefaultScope(Singleton.class);
             binder.bind(OrderService.class);
             binder.bind(DeliveryService.class);
+            binder.bind(AuditService.class);
+            binder.bind(FailingService.class);
         });
     }
 
@@ -55,6 +100,1042 @@ public class EventBusTest {
         assertEquals(2, deliveryService.eventCount);
     }
 
+    @Test
+    public void testExactEventTypes() {
+        EventBus eventBus = injector.getInstance(EventBus.class);
+        AuditService auditService = injector.getInstance(AuditService.class);
+        Order order = new Order("2", "Customer2");
+        eventBus.publish(new Event<>("Customer2"));
+        eventBus.publish(order);
+        eventBus.publish(new OrderCreatedEvent(order));
+        assertEquals(List.of("Customer2", order, order), auditService.events);
+        eventBus.publish(new Event<>(1L));
+        eventBus.publish("Customer2");
+        assertEquals(3, auditService.events.size());
+    }
+
+    @Test
+    public void testGenericEventTypes() {
+        Injector genericInjector = Injectors.create(EventBus.createModule(), binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(GenericObserver.class);
+        });
+        EventBus eventBus = genericInjector.getInstance(EventBus.class);
+        GenericObserver observer = genericInjector.getInstance(GenericObserver.class);
+        TypeLiteral<Event<List<String>>> namesEventType = new TypeLiteral<>() {};
+        eventBus.publish(new Event<>(List.of("a", "b")), namesEventType);
+        eventBus.publish(new Event<>(List.of(1, 2)), new TypeLiteral<Event<List<Integer>>>() {});
+        eventBus.publish(new Event<>(List.of("c")));
+        assertEquals(List.of("names:[a, b]", "numbers:[1, 2]"), observer.events);
+        eventBus.publishAsync(new Event<>(List.of("d")), namesEventType).join();
+        assertEquals("names:[d]", observer.events.get(2));
+        assertThrows(IllegalArgumentException.class, () -> eventBus.publish((Object) "d", namesEventType));
+        eventBus.close();
+        Injectors.dispose(genericInjector);
+    }
+
+    @Test
+    public void testGenericEventTypeAllocation() throws ReflectiveOperationException {
+        Injector allocationInjector = Injectors.create(EventBus.createModule(), binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(CountingObserver.class);
+        });
+        EventBus eventBus = allocationInjector.getInstance(EventBus.class);
+        CountingObserver observer = allocationInjector.getInstance(CountingObserver.class);
+        Event<String> event = new Event<>("Customer3");
+        assertSame(ObserverRegistry.getEventType(event), ObserverRegistry.getEventType(new Event<>("Customer4")));
+        for (int i = 0; i < 10_000; i++) { // warm up
+            eventBus.publish(event);
+        }
+        // the generic event type is cached, so that publishing the event doesn't allocate any object
+        Method allocatedBytesMethod = Class.forName("com.sun.management.ThreadMXBean")
+                .getMethod("getThreadAllocatedBytes", long.class);
+        Object threadBean = Class.forName("java.lang.management.ManagementFactory")
+                .getMethod("getThreadMXBean").invoke(null);
+        long threadId = Thread.currentThread().getId();
+        long start = (long) allocatedBytesMethod.invoke(threadBean, threadId);
+        long overhead = (long) allocatedBytesMethod.invoke(threadBean, threadId) - start;
+        start = (long) allocatedBytesMethod.invoke(threadBean, threadId);
+        for (int i = 0; i < 10_000; i++) {
+            eventBus.publish(event);
+        }
+        long allocatedBytes = (long) allocatedBytesMethod.invoke(threadBean, threadId) - start - overhead;
+        assertTrue(allocatedBytes < 10_000, "bytes allocated by 10000 publish calls: " + allocatedBytes);
+        assertEquals(20_000, observer.eventCount);
+        eventBus.close();
+        Injectors.dispose(allocationInjector);
+    }
+
+    @Test
+    public void testObserverExceptions() {
+        EventBus eventBus = injector.getInstance(EventBus.class);
+        IllegalStateException exception = new IllegalStateException("failed");
+        assertSame(exception, assertThrows(IllegalStateException.class, () -> eventBus.publish(exception)));
+        Exception checkedException = new Exception("failed");
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> eventBus.publish(checkedException));
+        assertSame(checkedException, thrown.getCause());
+    }
+
+    @Test
+    public void testObserverScopes() {
+        Injector scopedInjector = Injectors.create(EventBus.createModule(), binder -> {
+            binder.bind(PrototypeObserver.class);
+            binder.bind(SingletonObserver.class).in(Singleton.class);
+        });
+        EventBus eventBus = scopedInjector.getInstance(EventBus.class);
+        eventBus.publish(new ScopedEvent());
+        eventBus.publish(new ScopedEvent());
+        // a new prototype observer is created for each event, and the singleton observer is reused
+        assertEquals(2, PrototypeObserver.instances.size());
+        assertNotSame(PrototypeObserver.instances.get(0), PrototypeObserver.instances.get(1));
+        assertEquals(2, scopedInjector.getInstance(SingletonObserver.class).eventCount);
+        eventBus.close();
+        Injectors.dispose(scopedInjector);
+    }
+
+    @Test
+    public void testObserverFilters() {
+        Injector filterInjector = Injectors.create(EventBus.createModule(),
+                binder -> binder.bind(FilteredObserver.class));
+        EventBus eventBus = filterInjector.getInstance(EventBus.class);
+        eventBus.publish("short");
+        eventBus.publish(new OrderCreatedEvent(new Order("5", "Customer5")));
+        // filtered events don't create the observer instance
+        assertEquals(0, FilteredObserver.instanceCount.get());
+        eventBus.publish("long message");
+        eventBus.publish(new OrderCreatedEvent(new PriorityOrder("6", "Customer6")));
+        assertEquals(2, FilteredObserver.instanceCount.get());
+        assertThrows(IllegalArgumentException.class, () -> Injectors.create(EventBus.createModule(),
+                binder -> binder.bind(InvalidFilterObserver.class)));
+        eventBus.close();
+        Injectors.dispose(filterInjector);
+    }
+
+    @Test
+    public void testSubscriptions() throws InterruptedException {
+        Injector subscriptionInjector = Injectors.create(EventBus.createModule());
+        EventBus eventBus = subscriptionInjector.getInstance(EventBus.class);
+        SessionHandler sessionHandler = new SessionHandler();
+        try (Subscription subscription = eventBus.subscribe(sessionHandler)) {
+            eventBus.publish("message1");
+            assertTrue(subscription.isActive());
+        }
+        eventBus.publish("message2");
+        assertEquals(List.of("message1"), sessionHandler.messages);
+        assertThrows(IllegalArgumentException.class, () -> eventBus.subscribe(new Object()));
+        // weakly held subscribers are unregistered when they are garbage collected
+        ReferenceQueue<Object> collectedSubscribers = new ReferenceQueue<>();
+        Subscription[] weakSubscription = new Subscription[1];
+        WeakReference<?> subscriberReference = subscribeWeakly(eventBus, weakSubscription, collectedSubscribers);
+        awaitCollected(collectedSubscribers);
+        assertNull(subscriberReference.get());
+        eventBus.publish("message3");
+        assertFalse(weakSubscription[0].isActive());
+        assertEquals(List.of("message1"), sessionHandler.messages);
+        eventBus.close();
+        Injectors.dispose(subscriptionInjector);
+    }
+
+    @Test
+    public void testParallelFanOut() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Injector fanOutInjector = Injectors.create(new EventBusModule().withParallelFanOut(pool, 2, Document.class),
+                binder -> {
+                    binder.bind(IndexingObserver.class).in(Singleton.class);
+                    binder.bind(FailingIndexingObserver.class).in(Singleton.class);
+                });
+        EventBus eventBus = fanOutInjector.getInstance(EventBus.class);
+        IndexingObserver observer = fanOutInjector.getInstance(IndexingObserver.class);
+        // observers wait for each other, so the event is delivered only if they are invoked in parallel
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> eventBus.publish(new Document()));
+        assertEquals(1, exception.getSuppressed().length);
+        assertEquals(0, observer.latch.getCount());
+        assertEquals(4, observer.indexedCount.get());
+        eventBus.close();
+        Injectors.dispose(fanOutInjector);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testEventChannel() {
+        Injector channelInjector = Injectors.create(EventBus.createModule());
+        EventBus eventBus = channelInjector.getInstance(EventBus.class);
+        EventChannel<String> channel = eventBus.channel(String.class);
+        assertEquals(TypeLiteral.get(String.class), channel.getEventType());
+        channel.publish("unobserved");
+        // observers resolved by the channel are refreshed when subscriptions change
+        SessionHandler sessionHandler = new SessionHandler();
+        Subscription subscription = eventBus.subscribe(sessionHandler);
+        channel.publish("message1");
+        channel.publishAsync("message2").join();
+        subscription.close();
+        channel.publish("message3");
+        assertEquals(List.of("message1", "message2"), sessionHandler.messages);
+        eventBus.close();
+        Injectors.dispose(channelInjector);
+    }
+
+    @Test
+    public void testBatchObservers() throws InterruptedException {
+        Injector batchInjector = Injectors.create(EventBus.createModule(),
+                binder -> binder.bind(BatchObserver.class).in(Singleton.class));
+        EventBus eventBus = batchInjector.getInstance(EventBus.class);
+        BatchObserver observer = batchInjector.getInstance(BatchObserver.class);
+        for (int i = 0; i < 25; i++) {
+            eventBus.publish(i);
+        }
+        // full batches are delivered on the publishing thread, and the remaining events after the maximum delay
+        assertEquals(List.of(10, 10), observer.batchSizes.subList(0, 2));
+        assertTrue(observer.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(10, 10, 5), observer.batchSizes);
+        // pending events of size-only batches are delivered when the event bus is closed
+        eventBus.publish("pending");
+        assertTrue(observer.messageBatches.isEmpty());
+        eventBus.close();
+        assertEquals(List.of(List.of("pending")), observer.messageBatches);
+        // concurrent publishers claim each batch window atomically, so only full batches are delivered
+        Injector concurrentInjector = Injectors.create(EventBus.createModule());
+        EventBus concurrentBus = concurrentInjector.getInstance(EventBus.class);
+        concurrentBus.subscribe(observer);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; i < 250; i++) {
+                    concurrentBus.publish(i);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Collections.nCopies(10, 100), observer.idBatchSizes);
+        Injectors.dispose(concurrentInjector);
+        assertThrows(IllegalArgumentException.class, () -> Injectors.create(EventBus.createModule(),
+                binder -> binder.bind(InvalidBatchObserver.class)));
+        Injectors.dispose(batchInjector);
+    }
+
+    @Test
+    public void testReentrantPublishOnOtherBus() {
+        List<Runnable> executedTasks = new ArrayList<>();
+        Injector injectorA = Injectors.create(EventBus.createModule());
+        Injector injectorB = Injectors.create(new EventBusModule().withExecutor(task -> {
+            executedTasks.add(task);
+            task.run();
+        }));
+        EventBus eventBusA = injectorA.getInstance(EventBus.class);
+        EventBus eventBusB = injectorB.getInstance(EventBus.class);
+        ForwardingObserver forwardingObserver = new ForwardingObserver(eventBusB);
+        eventBusA.subscribe(forwardingObserver);
+        eventBusB.subscribe(forwardingObserver);
+        // the event published on bus B by an observer of bus A is queued, and delivered using the executor of bus B
+        eventBusA.publish("forwarded");
+        assertEquals(List.of(9), forwardingObserver.lengths);
+        assertEquals(1, executedTasks.size());
+        eventBusA.close();
+        eventBusB.close();
+        Injectors.dispose(injectorA);
+        Injectors.dispose(injectorB);
+    }
+
+    @Test
+    public void testFlowAdapters() {
+        Injector flowInjector = Injectors.create(EventBus.createModule());
+        EventBus eventBus = flowInjector.getInstance(EventBus.class);
+        SessionHandler sessionHandler = new SessionHandler();
+        eventBus.subscribe(sessionHandler);
+        List<Object> received = new ArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        boolean[] completed = new boolean[1];
+        eventBus.publisher(String.class, 4, OverflowPolicy.DROP_OLDEST).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription flowSubscription) {
+                subscription[0] = flowSubscription;
+            }
+
+            @Override
+            public void onNext(String item) {
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                received.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+        // the subscriber gets events only as it requests them, and the oldest events are dropped from its buffer
+        try (SubmissionPublisher<Object> upstream = new SubmissionPublisher<>(Runnable::run, 16)) {
+            upstream.subscribe(eventBus.subscriber());
+            for (int i = 0; i < 10; i++) {
+                upstream.submit("message-" + i);
+            }
+        }
+        assertEquals(10, sessionHandler.messages.size());
+        assertTrue(received.isEmpty());
+        subscription[0].request(2);
+        assertEquals(List.of("message-6", "message-7"), received);
+        eventBus.publish("message-10");
+        subscription[0].request(10);
+        assertEquals(List.of("message-6", "message-7", "message-8", "message-9", "message-10"), received);
+        eventBus.close();
+        assertTrue(completed[0]);
+        Injectors.dispose(flowInjector);
+    }
+
+    @Test
+    public void testFlowAdapterErrors() throws InterruptedException {
+        Injector flowInjector = Injectors.create(EventBus.createModule());
+        EventBus eventBus = flowInjector.getInstance(EventBus.class);
+        List<Object> received = new CopyOnWriteArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        Flow.Subscriber<String> subscriber = new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription flowSubscription) {
+                subscription[0] = flowSubscription;
+            }
+
+            @Override
+            public void onNext(String item) {
+                if (item.equals("fail")) {
+                    throw new IllegalStateException(item);
+                }
+                received.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                received.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+        // a non-positive request is signalled as an error by the emitting loop, and the subscription is cancelled
+        eventBus.publisher(String.class).subscribe(subscriber);
+        eventBus.publish("first");
+        subscription[0].request(0);
+        subscription[0].request(1);
+        assertEquals(1, received.size());
+        assertTrue(received.get(0) instanceof IllegalArgumentException);
+        // the subscription is cancelled when the subscriber throws from onNext, and later events are not emitted
+        received.clear();
+        eventBus.publisher(String.class).subscribe(subscriber);
+        subscription[0].request(10);
+        assertThrows(IllegalStateException.class, () -> eventBus.publish("fail"));
+        eventBus.publish("after");
+        assertTrue(received.isEmpty());
+        // the upstream subscription is cancelled when an item can't be published to the event bus
+        try (Subscription ignored = eventBus.subscribe(new FailingService());
+             SubmissionPublisher<Object> upstream = new SubmissionPublisher<>(Runnable::run, 16)) {
+            SessionHandler sessionHandler = new SessionHandler();
+            eventBus.subscribe(sessionHandler);
+            upstream.subscribe(eventBus.subscriber());
+            upstream.submit("before");
+            upstream.submit(new IllegalStateException("failed"));
+            upstream.submit("after");
+            assertEquals(List.of("before"), sessionHandler.messages);
+            assertEquals(0, upstream.getNumberOfSubscribers());
+        }
+        // a publisher blocked on the full buffer of a subscriber which doesn't request events is released on close
+        received.clear();
+        eventBus.publisher(String.class, 1, OverflowPolicy.BLOCK).subscribe(subscriber);
+        eventBus.publish("buffered");
+        Thread blockedPublisher = new Thread(() -> eventBus.publish("blocked"));
+        blockedPublisher.start();
+        while (blockedPublisher.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        eventBus.close();
+        blockedPublisher.join(5000);
+        assertFalse(blockedPublisher.isAlive());
+        assertTrue(received.isEmpty());
+        Injectors.dispose(flowInjector);
+    }
+
+    @Test
+    public void testParentBus() {
+        Injector parentInjector = Injectors.create(EventBus.createModule(),
+                binder -> binder.bind(SessionHandler.class).in(Singleton.class));
+        Injector childInjector = parentInjector.createChildInjector(new EventBusModule().withParentBus(),
+                binder -> binder.bind(ChildObserver.class).in(Singleton.class));
+        Injector grandChildInjector = childInjector.createChildInjector(new EventBusModule().withParentBus());
+        EventBus parentBus = parentInjector.getInstance(EventBus.class);
+        EventBus childBus = childInjector.getInstance(EventBus.class);
+        EventBus grandChildBus = grandChildInjector.getInstance(EventBus.class);
+        SessionHandler parentObserver = parentInjector.getInstance(SessionHandler.class);
+        ChildObserver childObserver = childInjector.getInstance(ChildObserver.class);
+        childBus.publish("child");
+        grandChildBus.publish("grandChild");
+        parentBus.publish("parent");
+        assertEquals(List.of("child", "grandChild", "parent"), parentObserver.messages);
+        assertEquals(List.of("child", "grandChild"), childObserver.messages);
+        // merged observers are refreshed when observers of an ancestor are changed
+        SessionHandler subscriber = new SessionHandler();
+        try (Subscription ignored = parentBus.subscribe(subscriber)) {
+            grandChildBus.publish("subscribed");
+        }
+        grandChildBus.publish("unsubscribed");
+        assertEquals(List.of("subscribed"), subscriber.messages);
+        assertEquals(List.of("child", "grandChild", "subscribed", "unsubscribed"), childObserver.messages);
+        grandChildBus.close();
+        childBus.close();
+        parentBus.close();
+        Injectors.dispose(parentInjector);
+    }
+
+    @Test
+    public void testParentBusObservers() throws InterruptedException {
+        AtomicInteger parentExecutions = new AtomicInteger(), childExecutions = new AtomicInteger();
+        Injector parentInjector = Injectors.create(EventBus.createModule(), binder -> {
+            binder.bind(Executor.class).named("audit").toInstance(command -> {
+                parentExecutions.incrementAndGet();
+                command.run();
+            });
+            binder.bind(ParentAuditObserver.class).in(Singleton.class);
+        });
+        Injector childInjector = parentInjector.createChildInjector(new EventBusModule().withParentBus(),
+                binder -> binder.bind(Executor.class).named("audit").toInstance(command -> {
+                    childExecutions.incrementAndGet();
+                    command.run();
+                }));
+        EventBus parentBus = parentInjector.getInstance(EventBus.class);
+        EventBus childBus = childInjector.getInstance(EventBus.class);
+        // observers of the parent event bus use the named executor of the parent injector
+        childBus.publish(1L);
+        assertEquals(List.of(1L), parentInjector.getInstance(ParentAuditObserver.class).events);
+        assertEquals(1, parentExecutions.get());
+        assertEquals(0, childExecutions.get());
+        // a weakly held subscriber of the parent event bus, collected while the child event bus delivers an event to
+        // it, is unregistered from the parent event bus
+        ReferenceQueue<Object> collectedSubscribers = new ReferenceQueue<>();
+        Subscription[] subscription = new Subscription[1];
+        WeakReference<?> subscriberReference = subscribeWeakly(parentBus, subscription, collectedSubscribers);
+        childBus.publish("warm up");
+        awaitCollected(collectedSubscribers);
+        assertTrue(subscription[0].isActive());
+        childBus.publish("collected");
+        assertFalse(subscription[0].isActive());
+        assertNull(subscriberReference.get());
+        assertEquals(0, parentBus.findObservers(TypeLiteral.get(String.class)).length);
+        assertEquals(0, childBus.findObservers(TypeLiteral.get(String.class)).length);
+        childBus.close();
+        parentBus.close();
+        Injectors.dispose(parentInjector);
+    }
+
+    /**
+     * Subscribes a new subscriber weakly, and returns a weak reference to it registered with the given queue, which
+     * must be kept reachable till the subscriber is collected.
+     */
+    private static WeakReference<?> subscribeWeakly(EventBus eventBus, Subscription[] subscription,
+            ReferenceQueue<Object> queue) {
+        SessionHandler subscriber = new SessionHandler();
+        subscription[0] = eventBus.subscribeWeakly(subscriber);
+        return new WeakReference<>(subscriber, queue);
+    }
+
+    /**
+     * Waits for a subscriber registered with the given reference queue to be garbage collected.
+     */
+    private static void awaitCollected(ReferenceQueue<Object> queue) throws InterruptedException {
+        Reference<?> reference = null;
+        for (int i = 0; i < 50 && reference == null; i++) {
+            System.gc();
+            reference = queue.remove(100);
+        }
+        assertNotNull(reference, "subscriber should be garbage collected");
+    }
+
+    @Test
+    public void testQualifiedEvents() {
+        Injector qualifierInjector = Injectors.create(EventBus.createModule(),
+                binder -> binder.bind(QualifiedObserver.class).in(Singleton.class));
+        EventBus eventBus = qualifierInjector.getInstance(EventBus.class);
+        QualifiedObserver observer = qualifierInjector.getInstance(QualifiedObserver.class);
+        eventBus.publish("order-1", Names.named("orders"));
+        eventBus.publish("login", Names.named("audit"));
+        eventBus.publish("plain");
+        eventBus.publish("unknown", Names.named("unknown"));
+        eventBus.publishAsync("order-2", Names.named("orders")).join();
+        assertEquals(List.of("order-1", "order-2"), observer.orders);
+        assertEquals(List.of("login"), observer.audits);
+        assertEquals(List.of("order-1", "login", "plain", "unknown", "order-2"), observer.messages);
+        // qualified observers of subscribed instances are unregistered when the subscription is closed
+        QualifiedObserver subscriber = new QualifiedObserver();
+        try (Subscription ignored = eventBus.subscribe(subscriber)) {
+            eventBus.publish("order-3", Names.named("orders"));
+        }
+        eventBus.publish("order-4", Names.named("orders"));
+        assertEquals(List.of("order-3"), subscriber.orders);
+        assertEquals(List.of("order-1", "order-2", "order-3", "order-4"), observer.orders);
+        eventBus.close();
+        Injectors.dispose(qualifierInjector);
+    }
+
+    @Test
+    public void testEventHierarchy() {
+        Injector hierarchyInjector = Injectors.create(new EventBusModule().withEventHierarchy(), binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(HierarchyObserver.class);
+        });
+        EventBus eventBus = hierarchyInjector.getInstance(EventBus.class);
+        HierarchyObserver observer = hierarchyInjector.getInstance(HierarchyObserver.class);
+        Order order = new Order("3", "Customer3");
+        eventBus.publish(new OrderCreatedEvent(order));
+        assertEquals(List.of("Event<Order>", "Event", "Object"), observer.events);
+        observer.events.clear();
+        eventBus.publish(new Event<>(new PriorityOrder("4", "Customer4")));
+        assertEquals(List.of("Event<Order>", "Event", "Object"), observer.events);
+        observer.events.clear();
+        eventBus.publish(1);
+        assertEquals(List.of("Number", "Object"), observer.events);
+        // qualified observers of super-types receive qualified events of sub-types
+        observer.events.clear();
+        eventBus.publish(new OrderCreatedEvent(order), Names.named("orders"));
+        assertEquals(List.of("@Named(orders) Event<Order>", "Event<Order>", "Event", "Object"), observer.events);
+        observer.events.clear();
+        eventBus.publish(new OrderCreatedEvent(order), Names.named("audit"));
+        assertEquals(List.of("Event<Order>", "Event", "Object"), observer.events);
+        eventBus.close();
+        Injectors.dispose(hierarchyInjector);
+    }
+
+    @Test
+    public void testReentrantDispatchOrder() {
+        Injector reentrantInjector = Injectors.create(EventBus.createModule(), binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(ReentrantObserver.class);
+        });
+        EventBus eventBus = reentrantInjector.getInstance(EventBus.class);
+        ReentrantObserver observer = reentrantInjector.getInstance(ReentrantObserver.class);
+        eventBus.publish("root");
+        // events published by observers are dispatched after the current event, in the order they are published
+        List<Object> expected = new ArrayList<>(List.of("root", "root"));
+        for (int i = 0; i < 20; i++) {
+            expected.add(i);
+            expected.add(i);
+        }
+        assertEquals(expected, observer.events);
+        eventBus.close();
+        Injectors.dispose(reentrantInjector);
+    }
+
+    @Test
+    public void testAsyncDelivery() throws InterruptedException {
+        ExecutorService busExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService auditExecutor = Executors.newSingleThreadExecutor();
+        EventBusModule eventBusModule = new EventBusModule().withExecutor(busExecutor);
+        Injector asyncInjector = Injectors.create(eventBusModule, binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(Executor.class).named("audit").toInstance(auditExecutor);
+            binder.bind(AsyncService.class);
+        });
+        try {
+            assertThrows(IllegalStateException.class, () -> eventBusModule.withExecutor(busExecutor));
+            EventBus eventBus = asyncInjector.getInstance(EventBus.class);
+            AsyncService asyncService = asyncInjector.getInstance(AsyncService.class);
+            Thread publisher = Thread.currentThread();
+            for (int i = 0; i < 10; i++) {
+                eventBus.publish(i);
+            }
+            assertTrue(asyncService.latch.await(5, TimeUnit.SECONDS));
+            // each observer receives events in order, as the executors are single threaded
+            List<Integer> expected = List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+            assertEquals(expected, asyncService.syncEvents);
+            assertEquals(expected, asyncService.asyncEvents);
+            assertEquals(expected, asyncService.auditEvents);
+            assertSame(publisher, asyncService.threads.get(0));
+            assertNotSame(publisher, asyncService.threads.get(1));
+            assertNotSame(asyncService.threads.get(1), asyncService.threads.get(2));
+            eventBus.publishAsync(10).join();
+            assertEquals(11, asyncService.syncEvents.size());
+            assertEquals(11, asyncService.asyncEvents.size());
+            assertEquals(11, asyncService.auditEvents.size());
+            eventBus.close();
+        } finally {
+            Injectors.dispose(asyncInjector);
+            busExecutor.shutdown();
+            auditExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        if (Runtime.version().feature() < 21) {
+            assertThrows(UnsupportedOperationException.class, () -> new EventBusModule().withVirtualThreads());
+            return;
+        }
+        Injector virtualInjector = Injectors.create(new EventBusModule().withVirtualThreads(), binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(AsyncService.class);
+        });
+        EventBus eventBus = virtualInjector.getInstance(EventBus.class);
+        eventBus.publishAsync(1).join();
+        assertEquals(List.of(1), virtualInjector.getInstance(AsyncService.class).asyncEvents);
+        eventBus.close();
+        Injectors.dispose(virtualInjector);
+    }
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        Injector coalescingInjector = Injectors.create(new EventBusModule()
+                .withCoalescing(ConfigChanged.class, ConfigChanged::getName, Duration.ofMillis(100))
+                .withCoalescing(CacheInvalidated.class, CacheInvalidated::getRegion, Duration.ofMillis(100),
+                        CacheInvalidated::merge), binder -> binder.bind(CoalescingObserver.class).in(Singleton.class));
+        EventBus eventBus = coalescingInjector.getInstance(EventBus.class);
+        CoalescingObserver observer = coalescingInjector.getInstance(CoalescingObserver.class);
+        for (int i = 0; i < 1000; i++) {
+            eventBus.publish(new ConfigChanged(i % 2 == 0 ? "even" : "odd", i));
+            eventBus.publish(new CacheInvalidated("orders", 1));
+        }
+        assertTrue(observer.latch.await(5, TimeUnit.SECONDS));
+        // a single event is delivered per coalescing key, which is the latest or reduced event
+        List<String> configEvents = observer.configEvents.stream().sorted().collect(Collectors.toList());
+        assertEquals(List.of("even=998", "odd=999"), configEvents);
+        assertEquals(List.of(1000), observer.invalidatedCounts);
+        // pending events are delivered when the event bus is closed
+        eventBus.publish(new CacheInvalidated("orders", 5));
+        eventBus.close();
+        assertEquals(List.of(1000, 5), observer.invalidatedCounts);
+        assertThrows(IllegalArgumentException.class, () -> new EventBusModule()
+                .withCoalescing(ConfigChanged.class, ConfigChanged::getName, Duration.ZERO));
+        Injectors.dispose(coalescingInjector);
+    }
+
+    @Test
+    public void testJournal(@TempDir Path journalDirectory) throws IOException {
+        EventCodec codec = new StringCodec();
+        List<String> messages = new ArrayList<>();
+        Injector journalInjector = Injectors.create(new EventBusModule().withJournal(journalDirectory, codec, 256, 10));
+        EventBus eventBus = journalInjector.getInstance(EventBus.class);
+        for (int i = 0; i < 50; i++) {
+            eventBus.publish("message-" + i);
+            eventBus.publish(i); // not journaled
+            messages.add("message-" + i);
+        }
+        eventBus.publishAsync("async-message").join();
+        messages.add("async-message");
+        eventBus.close();
+        Injectors.dispose(journalInjector);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            segments = files.sorted().collect(Collectors.toList());
+        }
+        assertTrue(segments.size() > 1);
+        // a segment created before a crash, without writing its header, is opened as an empty segment
+        String lastSegment = segments.get(segments.size() - 1).getFileName().toString();
+        long nextSequence = Long.parseLong(lastSegment.substring(0, lastSegment.indexOf('.'))) + 1;
+        Files.write(journalDirectory.resolve(String.format("%020d.journal", nextSequence)), new byte[256]);
+        // events are replayed to current observers after a restart, and new events are appended after them
+        journalInjector = Injectors.create(new EventBusModule().withJournal(journalDirectory, codec, 256, 10));
+        eventBus = journalInjector.getInstance(EventBus.class);
+        SessionHandler sessionHandler = new SessionHandler();
+        eventBus.subscribe(sessionHandler);
+        eventBus.publish("message-50");
+        messages.add("message-50");
+        sessionHandler.messages.clear();
+        assertEquals(52, eventBus.replayJournal());
+        assertEquals(messages, sessionHandler.messages);
+        eventBus.close();
+        Injectors.dispose(journalInjector);
+    }
+
+    @Test
+    public void testEventBridge(@TempDir Path socketDirectory) throws IOException, InterruptedException {
+        Injector injector1 = Injectors.create(EventBus.createModule());
+        Injector injector2 = Injectors.create(EventBus.createModule());
+        EventBus eventBus1 = injector1.getInstance(EventBus.class);
+        EventBus eventBus2 = injector2.getInstance(EventBus.class);
+        BridgeObserver observer1 = new BridgeObserver(1), observer2 = new BridgeObserver(1002);
+        eventBus1.subscribe(observer1);
+        eventBus2.subscribe(observer2);
+        Path socketPath = socketDirectory.resolve("events.sock");
+        EventCodec rejectingCodec = new StringCodec() {
+            @Override
+            public Object decode(ByteBuffer buffer) {
+                Object event = super.decode(buffer);
+                if (event.equals("poison")) {
+                    throw new IllegalArgumentException("invalid event");
+                }
+                return event;
+            }
+        };
+        try (EventBridge bridge1 = EventBridge.create(eventBus1, rejectingCodec, String.class);
+             EventBridge bridge2 = EventBridge.create(eventBus2, new StringCodec(), String.class)) {
+            bridge1.bind(socketPath);
+            bridge2.connect(socketPath);
+            // an event which can't be decoded is reported, without disconnecting the peer
+            eventBus2.publish("poison");
+            eventBus2.publish("reply");
+            // the reply is received after the peer is accepted by bridge1
+            assertTrue(observer1.latch.await(5, TimeUnit.SECONDS));
+            assertEquals(1, bridge1.getPeerCount());
+            for (int i = 0; i < 1000; i++) {
+                eventBus1.publish("message-" + i);
+            }
+            eventBus1.publish(1); // not forwarded
+            assertTrue(observer2.latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, bridge1.getDroppedCount());
+        }
+        // events are forwarded in order, and received events are not forwarded back to the peer
+        assertEquals(List.of("poison", "reply"), observer2.messages.subList(0, 2));
+        assertEquals(observer1.messages.subList(1, 1001), observer2.messages.subList(2, 1002));
+        assertEquals(1001, observer1.messages.size());
+        assertEquals("reply", observer1.messages.get(0));
+        assertTrue(Files.notExists(socketPath));
+        eventBus1.close();
+        eventBus2.close();
+        Injectors.dispose(injector1);
+        Injectors.dispose(injector2);
+        assertThrows(IllegalArgumentException.class, () -> EventBridge.create(eventBus1, new StringCodec(), 16,
+                OverflowPolicy.CALLER_RUNS, Duration.ofSeconds(1), String.class));
+    }
+
+    @Test
+    public void testEventBridgePeerErrors() throws IOException, InterruptedException {
+        Injector bridgeInjector = Injectors.create(EventBus.createModule());
+        EventBus eventBus = bridgeInjector.getInstance(EventBus.class);
+        BridgeObserver observer = new BridgeObserver(1);
+        eventBus.subscribe(observer);
+        InetSocketAddress address;
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            probe.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            address = (InetSocketAddress) probe.getLocalAddress();
+        }
+        try (EventBridge bridge = EventBridge.create(eventBus, new StringCodec(), 4, OverflowPolicy.BLOCK,
+                Duration.ofMillis(200), String.class)) {
+            bridge.bind(address);
+            try (SocketChannel slowPeer = SocketChannel.open(address)) {
+                byte[] hello = "hello".getBytes(StandardCharsets.UTF_8);
+                slowPeer.write(ByteBuffer.allocate(4 + hello.length).putInt(hello.length).put(hello).flip());
+                assertTrue(observer.latch.await(5, TimeUnit.SECONDS)); // the peer is accepted
+                String largeMessage = "x".repeat(64 * 1024);
+                for (int i = 0; i < 1000; i++) {
+                    eventBus.publish(largeMessage);
+                }
+                // the peer which doesn't read events is disconnected after the write timeout
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                long receivedBytes = 0;
+                for (int count; (count = slowPeer.read(buffer)) >= 0; buffer.clear()) {
+                    receivedBytes += count;
+                }
+                assertTrue(receivedBytes < 1000L * (4 + largeMessage.length()));
+                assertEquals(0, bridge.getPeerCount());
+            }
+            try (SocketChannel invalidPeer = SocketChannel.open(address)) {
+                // the peer sending a frame with an invalid length is disconnected
+                invalidPeer.write(ByteBuffer.allocate(4).putInt(0, -1));
+                assertEquals(-1, invalidPeer.read(ByteBuffer.allocate(16)));
+            }
+        }
+        Injectors.dispose(bridgeInjector);
+    }
+
+    @Test
+    public void testRingBuffer() throws InterruptedException {
+        Injector ringInjector = Injectors.create(new EventBusModule()
+                .withRingBuffer(1000, 1, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK), binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(RingBufferObserver.class);
+        });
+        EventBus eventBus = ringInjector.getInstance(EventBus.class);
+        RingBufferObserver observer = ringInjector.getInstance(RingBufferObserver.class);
+        observer.release.countDown();
+        Thread[] publishers = new Thread[4];
+        for (int i = 0; i < publishers.length; i++) {
+            final long offset = i * 10_000L;
+            publishers[i] = new Thread(() -> {
+                for (long j = 1; j <= 10_000; j++) {
+                    eventBus.publish(offset + j);
+                }
+            });
+            publishers[i].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        eventBus.close();
+        assertEquals(40_000, observer.events.size());
+        QueueStats queueStats = eventBus.getQueueStats().get(0);
+        assertEquals(1024, queueStats.getCapacity());
+        assertEquals(40_000, queueStats.getPublishedCount());
+        assertEquals(0, queueStats.getDroppedCount());
+        assertEquals(0, queueStats.getQueueDepth());
+        Injectors.dispose(ringInjector);
+    }
+
+    @Test
+    public void testRingBufferClose() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            Injector ringInjector = Injectors.create(new EventBusModule()
+                    .withRingBuffer(64, 2, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK), binder -> {
+                binder.setDefaultScope(Singleton.class);
+                binder.bind(RingBufferObserver.class);
+            });
+            EventBus eventBus = ringInjector.getInstance(EventBus.class);
+            RingBufferObserver observer = ringInjector.getInstance(RingBufferObserver.class);
+            observer.release.countDown();
+            CountDownLatch started = new CountDownLatch(4);
+            AtomicBoolean closed = new AtomicBoolean();
+            Thread[] publishers = new Thread[4];
+            for (int i = 0; i < publishers.length; i++) {
+                publishers[i] = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        for (long j = 1; !closed.get(); j++) {
+                            eventBus.publish(j);
+                        }
+                    } catch (IllegalStateException e) {
+                        // the event bus is closed
+                    }
+                });
+                publishers[i].start();
+            }
+            started.await();
+            eventBus.close();
+            closed.set(true);
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+            // every event added to the ring buffer is delivered, even when it is published while the bus is closed
+            assertEquals(eventBus.getQueueStats().get(0).getPublishedCount(), observer.events.size());
+            Injectors.dispose(ringInjector);
+        }
+    }
+
+    @Test
+    public void testPartitions() throws InterruptedException {
+        Injector partitionInjector = Injectors.create(new EventBusModule()
+                .withPartitions(4, 100, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK), binder -> {
+            binder.setDefaultScope(Singleton.class);
+            binder.bind(AccountObserver.class);
+        });
+        EventBus eventBus = partitionInjector.getInstance(EventBus.class);
+        AccountObserver observer = partitionInjector.getInstance(AccountObserver.class);
+        Thread[] publishers = new Thread[2];
+        for (int i = 0; i < publishers.length; i++) {
+            final int firstAccount = i * 4;
+            publishers[i] = new Thread(() -> {
+                for (int sequence = 0; sequence < 1000; sequence++) {
+                    for (int account = firstAccount; account < firstAccount + 4; account++) {
+                        eventBus.publishOrdered(new AccountEvent(account, sequence), account);
+                    }
+                }
+            });
+            publishers[i].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        eventBus.close();
+        List<Integer> expectedSequences = Stream.iterate(0, i -> i + 1).limit(1000).collect(Collectors.toList());
+        for (int account = 0; account < 8; account++) {
+            assertEquals(expectedSequences, observer.getSequences(account));
+        }
+        List<QueueStats> queueStats = eventBus.getQueueStats();
+        assertEquals(4, queueStats.size());
+        assertEquals("eventbus-partition-0", queueStats.get(0).getName());
+        assertEquals(128, queueStats.get(0).getCapacity());
+        assertEquals(8000, queueStats.stream().mapToLong(QueueStats::getPublishedCount).sum());
+        assertEquals(0, queueStats.stream().mapToInt(QueueStats::getQueueDepth).sum());
+        Injectors.dispose(partitionInjector);
+        EventBus defaultBus = injector.getInstance(EventBus.class);
+        assertThrows(IllegalStateException.class, () -> defaultBus.publishOrdered(new AccountEvent(0, 0), 0));
+    }
+
+    @Test
+    public void testPartitionOverflow() throws InterruptedException {
+        for (OverflowPolicy overflowPolicy : List.of(OverflowPolicy.DROP_NEWEST, OverflowPolicy.DROP_OLDEST)) {
+            Injector partitionInjector = Injectors.create(new EventBusModule()
+                    .withPartitions(1, 1, WaitStrategy.SLEEPING, overflowPolicy), binder -> {
+                binder.setDefaultScope(Singleton.class);
+                binder.bind(RingBufferObserver.class);
+            });
+            EventBus eventBus = partitionInjector.getInstance(EventBus.class);
+            RingBufferObserver observer = partitionInjector.getInstance(RingBufferObserver.class);
+            eventBus.publishOrdered(0L, "key"); // blocks the consumer thread, till it is released
+            assertTrue(observer.started.await(5, TimeUnit.SECONDS));
+            for (long i = 1; i <= 4; i++) {
+                eventBus.publishOrdered(i, "key");
+            }
+            assertEquals(2, eventBus.getQueueStats().get(0).getCapacity());
+            assertEquals(2, eventBus.getQueueStats().get(0).getQueueDepth());
+            observer.release.countDown();
+            eventBus.close();
+            // events of the key are dropped, while the remaining events are still delivered in order
+            assertEquals(2, eventBus.getQueueStats().get(0).getDroppedCount());
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                assertEquals(List.of(0L, 1L, 2L), observer.events);
+            } else {
+                assertEquals(List.of(0L, 3L, 4L), observer.events);
+            }
+            Injectors.dispose(partitionInjector);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new EventBusModule()
+                .withPartitions(1, 1, WaitStrategy.SLEEPING, OverflowPolicy.CALLER_RUNS));
+    }
+
+    @Test
+    public void testRingBufferOverflow() throws InterruptedException {
+        for (OverflowPolicy overflowPolicy : List.of(OverflowPolicy.DROP_NEWEST, OverflowPolicy.DROP_OLDEST,
+                OverflowPolicy.CALLER_RUNS)) {
+            Injector ringInjector = Injectors.create(new EventBusModule()
+                    .withRingBuffer(4, 1, WaitStrategy.SLEEPING, overflowPolicy), binder -> {
+                binder.setDefaultScope(Singleton.class);
+                binder.bind(RingBufferObserver.class);
+            });
+            EventBus eventBus = ringInjector.getInstance(EventBus.class);
+            RingBufferObserver observer = ringInjector.getInstance(RingBufferObserver.class);
+            eventBus.publish(0L); // blocks the consumer thread, till it is released
+            assertTrue(observer.started.await(5, TimeUnit.SECONDS));
+            for (long i = 1; i <= 6; i++) {
+                eventBus.publish(i);
+            }
+            QueueStats queueStats = eventBus.getQueueStats().get(0);
+            assertEquals(4, queueStats.getQueueDepth());
+            observer.release.countDown();
+            eventBus.close();
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                assertEquals(2, eventBus.getQueueStats().get(0).getDroppedCount());
+                assertEquals(List.of(0L, 1L, 2L, 3L, 4L), observer.events);
+            } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                assertEquals(2, eventBus.getQueueStats().get(0).getDroppedCount());
+                assertEquals(List.of(0L, 3L, 4L, 5L, 6L), observer.events);
+            } else {
+                assertEquals(2, eventBus.getQueueStats().get(0).getCallerRunsCount());
+                assertEquals(List.of(5L, 6L, 0L, 1L, 2L, 3L, 4L), observer.events);
+            }
+            Injectors.dispose(ringInjector);
+        }
+        // a single slot can't be told full from empty, so the capacity is at least two
+        Injector ringInjector = Injectors.create(new EventBusModule()
+                .withRingBuffer(1, 1, WaitStrategy.SLEEPING, OverflowPolicy.BLOCK));
+        assertEquals(2, ringInjector.getInstance(EventBus.class).getQueueStats().get(0).getCapacity());
+        Injectors.dispose(ringInjector);
+    }
+
+    public static class CoalescingObserver {
+        private final List<String> configEvents = new CopyOnWriteArrayList<>();
+        private final List<Integer> invalidatedCounts = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch = new CountDownLatch(3);
+
+        @Observes
+        void onConfigChanged(ConfigChanged event) {
+            configEvents.add(event.getName() + "=" + event.getVersion());
+            latch.countDown();
+        }
+
+        @Observes
+        void onCacheInvalidated(CacheInvalidated event) {
+            invalidatedCounts.add(event.count);
+            latch.countDown();
+        }
+    }
+
+    public static class ConfigChanged {
+        private final String name;
+        private final int version;
+
+        ConfigChanged(String name, int version) {
+            this.name = name;
+            this.version = version;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getVersion() {
+            return version;
+        }
+    }
+
+    public static class CacheInvalidated {
+        private final String region;
+        private final int count;
+
+        CacheInvalidated(String region, int count) {
+            this.region = region;
+            this.count = count;
+        }
+
+        String getRegion() {
+            return region;
+        }
+
+        CacheInvalidated merge(CacheInvalidated other) {
+            return new CacheInvalidated(region, count + other.count);
+        }
+    }
+
+    private static class StringCodec implements EventCodec {
+        @Override
+        public byte[] encode(Object event) {
+            return event instanceof String ? ((String) event).getBytes(StandardCharsets.UTF_8) : null;
+        }
+
+        @Override
+        public Object decode(ByteBuffer buffer) {
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+
+    public static class RingBufferObserver {
+        private final List<Long> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Observes
+        void onEvent(Long event) throws InterruptedException {
+            if (event == 0L) {
+                started.countDown();
+                release.await();
+            }
+            events.add(event);
+        }
+    }
+
+    public static class AsyncService {
+        private final List<Integer> syncEvents = new CopyOnWriteArrayList<>();
+        private final List<Integer> asyncEvents = new CopyOnWriteArrayList<>();
+        private final List<Integer> auditEvents = new CopyOnWriteArrayList<>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<>(new Thread[3]);
+        private final CountDownLatch latch = new CountDownLatch(20);
+
+        @Observes
+        void onEvent(Integer event) {
+            syncEvents.add(event);
+            threads.set(0, Thread.currentThread());
+        }
+
+        @Observes(async = true)
+        void onAsyncEvent(Integer event) {
+            asyncEvents.add(event);
+            threads.set(1, Thread.currentThread());
+            latch.countDown();
+        }
+
+        @Observes(executor = "audit")
+        void onAuditEvent(Integer event) {
+            auditEvents.add(event);
+            threads.set(2, Thread.currentThread());
+            latch.countDown();
+        }
+    }
+
     public static class OrderService {
         private final EventBus eventBus;
 
@@ -81,6 +1162,369 @@ public class EventBusTest {
         }
     }
 
+    public static class CountingObserver {
+        private int eventCount;
+
+        @Observes
+        void onCustomerEvent(Event<String> event) {
+            eventCount++;
+        }
+    }
+
+    public static class AuditService {
+        private final List<Object> events = new ArrayList<>();
+
+        @Observes
+        void onCustomerEvent(Event<String> event) {
+            events.add(event.getSource());
+        }
+
+        @Observes
+        void onOrder(Order order) {
+            events.add(order);
+        }
+
+        @Observes
+        void onOrderCreated(OrderCreatedEvent event) {
+            events.add(event.getSource());
+        }
+    }
+
+    public static class GenericObserver {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Observes
+        void onNames(Event<List<String>> event) {
+            events.add("names:" + event.getSource());
+        }
+
+        @Observes
+        void onNumbers(Event<List<Integer>> event) {
+            events.add("numbers:" + event.getSource());
+        }
+    }
+
+    public static class FailingService {
+        @Observes
+        private void onRuntimeException(IllegalStateException exception) {
+            throw exception;
+        }
+
+        @Observes
+        private void onException(Exception exception) throws Exception {
+            throw exception;
+        }
+    }
+
+    public static class HierarchyObserver {
+        private final List<String> events = new ArrayList<>();
+
+        @Observes
+        void onOrderEvent(Event<Order> event) {
+            events.add("Event<Order>");
+        }
+
+        @Observes
+        void onQualifiedOrderEvent(@Named("orders") Event<Order> event) {
+            events.add("@Named(orders) Event<Order>");
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Observes
+        void onRawEvent(Event event) {
+            events.add("Event");
+        }
+
+        @Observes
+        void onNumber(Number number) {
+            events.add("Number");
+        }
+
+        @Observes
+        void onObject(Object event) {
+            events.add("Object");
+        }
+    }
+
+    private static class PriorityOrder extends Order {
+        private PriorityOrder(String orderId, String customer) {
+            super(orderId, customer);
+        }
+    }
+
+    public static class ReentrantObserver {
+        private final List<Object> events = new ArrayList<>();
+        @Inject
+        private EventBus eventBus;
+
+        @Observes
+        void onRootEvent(String event) {
+            events.add(event);
+            for (int i = 0; i < 20; i++) {
+                eventBus.publish(i);
+            }
+        }
+
+        @Observes
+        void onRootEventAgain(String event) {
+            events.add(event);
+        }
+
+        @Observes
+        void onEvent(Integer event) {
+            events.add(event);
+        }
+
+        @Observes
+        void onEventAgain(Integer event) {
+            events.add(event);
+        }
+    }
+
+    public static class ScopedEvent {
+    }
+
+    public static class PrototypeObserver {
+        private static final List<PrototypeObserver> instances = new CopyOnWriteArrayList<>();
+
+        @Observes
+        void onEvent(ScopedEvent event) {
+            instances.add(this);
+        }
+    }
+
+    public static class FilteredObserver {
+        private static final AtomicInteger instanceCount = new AtomicInteger();
+
+        public FilteredObserver() {
+            instanceCount.incrementAndGet();
+        }
+
+        @Observes(filter = "isLongMessage")
+        void onMessage(String message) {
+            assertTrue(isLongMessage(message));
+        }
+
+        @Observes(sourceType = PriorityOrder.class)
+        void onOrderCreated(OrderCreatedEvent event) {
+            assertTrue(event.getSource() instanceof PriorityOrder);
+        }
+
+        private static boolean isLongMessage(CharSequence message) {
+            return message.length() > 5;
+        }
+    }
+
+    public static class InvalidFilterObserver {
+        @Observes(filter = "isValid")
+        void onMessage(String message) {
+        }
+
+        boolean isValid(String message) {
+            return true;
+        }
+    }
+
+    public static class ForwardingObserver {
+        private final EventBus eventBus;
+        private final List<Integer> lengths = new CopyOnWriteArrayList<>();
+
+        ForwardingObserver(EventBus eventBus) {
+            this.eventBus = eventBus;
+        }
+
+        @Observes
+        void onMessage(String message) {
+            eventBus.publish(message.length());
+        }
+
+        @Observes(async = true)
+        void onLength(Integer length) {
+            lengths.add(length);
+        }
+    }
+
+    public static class BridgeObserver {
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch;
+
+        BridgeObserver(int messageCount) {
+            this.latch = new CountDownLatch(messageCount);
+        }
+
+        @Observes
+        void onMessage(String message) {
+            messages.add(message);
+            latch.countDown();
+        }
+    }
+
+    public static class SessionHandler {
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Observes
+        void onMessage(String message) {
+            messages.add(message);
+        }
+    }
+
+    public static class Document {
+    }
+
+    public static class IndexingObserver {
+        private final CountDownLatch latch = new CountDownLatch(4);
+        private final AtomicInteger indexedCount = new AtomicInteger();
+
+        @Observes
+        void indexTitle(Document document) throws InterruptedException {
+            index();
+        }
+
+        @Observes
+        void indexContent(Document document) throws InterruptedException {
+            index();
+        }
+
+        @Observes
+        void indexAuthor(Document document) throws InterruptedException {
+            index();
+        }
+
+        @Observes
+        void indexTags(Document document) throws InterruptedException {
+            index();
+        }
+
+        private void index() throws InterruptedException {
+            latch.countDown();
+            if (latch.await(5, TimeUnit.SECONDS)) {
+                indexedCount.incrementAndGet();
+            }
+        }
+    }
+
+    public static class FailingIndexingObserver {
+        @Observes
+        void indexLinks(Document document) {
+            throw new IllegalStateException("links");
+        }
+
+        @Observes
+        void indexImages(Document document) {
+            throw new IllegalStateException("images");
+        }
+    }
+
+    public static class BatchObserver {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<List<String>> messageBatches = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch = new CountDownLatch(3);
+
+        private final List<Integer> idBatchSizes = new CopyOnWriteArrayList<>();
+
+        @Observes(batchSize = 10, maxDelayMs = 1000)
+        void onNumbers(List<Integer> numbers) {
+            batchSizes.add(numbers.size());
+            latch.countDown();
+        }
+
+        @Observes(batchSize = 100)
+        void onMessages(List<String> messages) {
+            messageBatches.add(messages);
+        }
+
+        @Observes(batchSize = 100)
+        void onIds(List<Long> ids) {
+            idBatchSizes.add(ids.size());
+        }
+    }
+
+    public static class InvalidBatchObserver {
+        @Observes(batchSize = 10)
+        void onNumber(Integer number) {
+        }
+    }
+
+    public static class ParentAuditObserver {
+        private final List<Long> events = new CopyOnWriteArrayList<>();
+
+        @Observes(executor = "audit")
+        void onEvent(Long event) {
+            events.add(event);
+        }
+    }
+
+    public static class ChildObserver {
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Observes
+        void onMessage(String message) {
+            messages.add(message);
+        }
+    }
+
+    public static class AccountEvent {
+        private final int account;
+        private final int sequence;
+
+        AccountEvent(int account, int sequence) {
+            this.account = account;
+            this.sequence = sequence;
+        }
+    }
+
+    public static class AccountObserver {
+        private final Map<Integer, List<Integer>> accountSequences = new ConcurrentHashMap<>();
+
+        @Observes
+        void onAccountEvent(AccountEvent event) {
+            // events of an account are delivered in order on the consumer thread of its partition
+            accountSequences.computeIfAbsent(event.account, account -> new ArrayList<>()).add(event.sequence);
+        }
+
+        List<Integer> getSequences(int account) {
+            return accountSequences.get(account);
+        }
+    }
+
+    public static class QualifiedObserver {
+        private final List<String> orders = new CopyOnWriteArrayList<>();
+        private final List<String> audits = new CopyOnWriteArrayList<>();
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Observes
+        void onOrder(@Named("orders") String order) {
+            orders.add(order);
+        }
+
+        @Observes
+        void onAudit(@Named("audit") String audit) {
+            audits.add(audit);
+        }
+
+        @Observes
+        void onMessage(String message) {
+            messages.add(message);
+        }
+    }
+
+    public static class SingletonObserver {
+        private int eventCount;
+
+        @Observes
+        void onEvent(ScopedEvent event) {
+            eventCount++;
+        }
+    }
+
+    public static class OrderCreatedEvent extends Event<Order> {
+        private static final long serialVersionUID = 1L;
+
+        OrderCreatedEvent(Order order) {
+            super(order);
+        }
+    }
+
     private static class Order {
         private final String orderId;
         private final String customer;